@@ -1,12 +1,21 @@
 package com.sonnguyen.laptopshop.controller;
 
 import com.sonnguyen.laptopshop.model.User;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
+import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import com.sonnguyen.laptopshop.payload.response.UserResponse;
 import com.sonnguyen.laptopshop.repository.UserRepository;
 import com.sonnguyen.laptopshop.repository.OrderRepository;
 import com.sonnguyen.laptopshop.repository.ProductRepository;
+import com.sonnguyen.laptopshop.service.DashboardMetrics;
+import com.sonnguyen.laptopshop.service.ProductService;
+import com.sonnguyen.laptopshop.service.SalesLeaderboard;
+import com.sonnguyen.laptopshop.service.UserService;
+import com.sonnguyen.laptopshop.utils.SortFields;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,15 +30,24 @@ public class AdminController {
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
     private final com.sonnguyen.laptopshop.repository.CategoryRepository categoryRepository;
+    private final UserService userService;
+    private final ProductService productService;
+    private final DashboardMetrics dashboardMetrics;
 
     public AdminController(UserRepository userRepository, 
                            ProductRepository productRepository, 
                            OrderRepository orderRepository,
-                           com.sonnguyen.laptopshop.repository.CategoryRepository categoryRepository) {
+                           com.sonnguyen.laptopshop.repository.CategoryRepository categoryRepository,
+                           UserService userService,
+                           ProductService productService,
+                           DashboardMetrics dashboardMetrics) {
         this.userRepository = userRepository;
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
         this.categoryRepository = categoryRepository;
+        this.userService = userService;
+        this.productService = productService;
+        this.dashboardMetrics = dashboardMetrics;
     }
 
     @GetMapping("/users")
@@ -41,15 +59,29 @@ public class AdminController {
         return userRepository.findAll(pageable);
     }
 
+    @GetMapping("/users/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public CursorPageResponse<UserResponse> scrollUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir) {
+        Sort sort = SortFields.resolve(SortFields.USER, sortBy, sortDir);
+        return userService.scrollUsers(sort, cursor, size);
+    }
+
     @GetMapping("/dashboard/stats")
     @PreAuthorize("hasRole('ADMIN')")
     public java.util.Map<String, Object> getDashboardStats() {
+        DashboardMetrics.Snapshot snapshot = dashboardMetrics.snapshot();
         java.util.Map<String, Object> stats = new java.util.HashMap<>();
-        stats.put("totalProducts", productRepository.count());
-        stats.put("totalUsers", userRepository.count());
-        stats.put("totalOrders", orderRepository.count());
-        stats.put("totalCategories", categoryRepository.count());
-        stats.put("totalRevenue", orderRepository.sumRevenue() != null ? orderRepository.sumRevenue() : 0.0);
+        stats.put("totalProducts", snapshot.products());
+        stats.put("totalUsers", snapshot.users());
+        stats.put("totalOrders", snapshot.orders());
+        stats.put("totalCategories", snapshot.categories());
+        stats.put("totalRevenue", snapshot.revenue());
+        stats.put("ordersByStatus", snapshot.ordersByStatus());
+        stats.put("reconciledAt", snapshot.reconciledAt());
         return stats;
     }
 
@@ -62,10 +94,9 @@ public class AdminController {
 
     @GetMapping("/dashboard/top-products")
     @PreAuthorize("hasRole('ADMIN')")
-    public List<com.sonnguyen.laptopshop.model.Product> getTopProducts(@RequestParam(defaultValue = "5") int limit) {
-        // For now returning recent products, ideally should be top selling
-        Pageable pageable = PageRequest.of(0, limit, org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "id"));
-        return productRepository.findAll(pageable).getContent();
+    public List<ProductResponse> getTopProducts(@RequestParam(defaultValue = "5") int limit,
+                                                @RequestParam(defaultValue = "all") String period) {
+        return productService.getTopSellingProducts(SalesLeaderboard.Period.fromParam(period), PageRequest.of(0, limit)).getContent();
     }
 }
 
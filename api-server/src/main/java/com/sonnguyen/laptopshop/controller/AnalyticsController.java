@@ -0,0 +1,123 @@
+package com.sonnguyen.laptopshop.controller;
+
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.SalesRollup;
+import com.sonnguyen.laptopshop.payload.response.SalesCubeRow;
+import com.sonnguyen.laptopshop.payload.response.SalesRollupResponse;
+import com.sonnguyen.laptopshop.service.SalesCube;
+import com.sonnguyen.laptopshop.service.SalesRollupService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+// Sales over time, read from the sales_rollups buckets; from is inclusive, to exclusive
+@RestController
+@RequestMapping("/api/v1/admin/analytics")
+public class AnalyticsController {
+
+    private final SalesRollupService salesRollupService;
+    private final ObjectProvider<SalesCube> salesCube;
+
+    public AnalyticsController(SalesRollupService salesRollupService, ObjectProvider<SalesCube> salesCube) {
+        this.salesRollupService = salesRollupService;
+        this.salesCube = salesCube;
+    }
+
+    // One bucket per hour or day with sales; dimension=product|factory|category needs the key
+    @GetMapping("/sales")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<SalesRollupResponse> getSales(
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(defaultValue = "total") String dimension,
+            @RequestParam(required = false) String key,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        SalesRollup.Granularity bucket = parse(SalesRollup.Granularity.class, "granularity", granularity);
+        Instant end = to != null ? to : Instant.now();
+        return salesRollupService.series(bucket, parse(SalesRollup.Dimension.class, "dimension", dimension), key,
+                from != null ? from : defaultFrom(bucket, end), end);
+    }
+
+    @GetMapping("/sales/top")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<SalesRollupResponse> getTopSales(
+            @RequestParam(defaultValue = "product") String dimension,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "10") int limit) {
+        SalesRollup.Granularity bucket = parse(SalesRollup.Granularity.class, "granularity", granularity);
+        Instant end = to != null ? to : Instant.now();
+        return salesRollupService.top(bucket, parse(SalesRollup.Dimension.class, "dimension", dimension),
+                from != null ? from : defaultFrom(bucket, end), end, limit);
+    }
+
+    @GetMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getBackfill() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("running", salesRollupService.isBackfillRunning());
+        salesRollupService.backfillState().ifPresent(state -> {
+            status.put("cursor", state.getBackfillCursor());
+            status.put("startedAt", state.getBackfillStartedAt());
+            status.put("completedAt", state.getBackfillCompletedAt());
+        });
+        return status;
+    }
+
+    // Rebuilds every rollup from the completed orders
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> startBackfill() {
+        if (!salesRollupService.startBackfill()) {
+            throw new CommonException("A sales rollup backfill is already running", HttpStatus.CONFLICT);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(getBackfill());
+    }
+
+    // Completed sales grouped by any of factory, target, category and week (e.g. groupBy=factory,week);
+    // drop a dimension from groupBy to roll it up, filter on it to drill down. from and to are dates
+    // inside the first and last week, both inclusive.
+    @GetMapping("/cube")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<SalesCubeRow> getSalesCube(
+            @RequestParam(required = false) List<String> groupBy,
+            @RequestParam(required = false) List<String> factory,
+            @RequestParam(required = false) List<String> target,
+            @RequestParam(required = false) List<Long> category,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        SalesCube cube = salesCube.getIfAvailable();
+        if (cube == null) {
+            throw new CommonException("The sales cube is disabled", HttpStatus.NOT_FOUND);
+        }
+        if (!cube.isReady()) {
+            throw new CommonException("The sales cube is still loading", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        Set<SalesCube.Dimension> dimensions = EnumSet.noneOf(SalesCube.Dimension.class);
+        if (groupBy != null) {
+            groupBy.forEach(name -> dimensions.add(parse(SalesCube.Dimension.class, "groupBy", name.trim())));
+        }
+        return cube.query(dimensions, factory, target, category, from, to);
+    }
+
+    private static Instant defaultFrom(SalesRollup.Granularity granularity, Instant to) {
+        return to.minus(granularity == SalesRollup.Granularity.HOUR ? Duration.ofHours(48) : Duration.ofDays(30));
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new CommonException("Unsupported " + name + ": " + value, HttpStatus.BAD_REQUEST);
+        }
+    }
+}
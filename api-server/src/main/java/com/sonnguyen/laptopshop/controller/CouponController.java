@@ -1,8 +1,10 @@
 package com.sonnguyen.laptopshop.controller;
 
+import com.sonnguyen.laptopshop.exception.CommonException;
 import com.sonnguyen.laptopshop.model.Coupon;
 import com.sonnguyen.laptopshop.payload.response.ApiResponse;
-import com.sonnguyen.laptopshop.repository.CouponRepository;
+import com.sonnguyen.laptopshop.service.CouponEngine;
+import com.sonnguyen.laptopshop.service.CouponService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -10,7 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/coupons")
@@ -18,56 +21,48 @@ import java.time.LocalDate;
 @Tag(name = "Coupons", description = "Coupon management APIs")
 public class CouponController {
 
-    private final CouponRepository couponRepository;
+    private final CouponEngine couponEngine;
+    private final CouponService couponService;
 
+    // Answered from the in-memory coupon cache; pass amount to check the minimum order amount too
     @GetMapping("/check")
-    public ResponseEntity<ApiResponse<Coupon>> checkCoupon(@RequestParam String code) {
-        return couponRepository.findByCode(code)
-                .map(coupon -> {
-                    if (!coupon.isActive()) {
-                        return ResponseEntity.badRequest().body(
-                                ApiResponse.<Coupon>builder()
-                                        .success(false)
-                                        .message("Coupon is inactive")
-                                        .build()
-                        );
-                    }
-                    if (coupon.getExpiryDate() != null && coupon.getExpiryDate().isBefore(LocalDate.now())) {
-                        return ResponseEntity.badRequest().body(
-                                ApiResponse.<Coupon>builder()
-                                        .success(false)
-                                        .message("Coupon has expired")
-                                        .build()
-                        );
-                    }
-                    return ResponseEntity.ok(
-                            ApiResponse.<Coupon>builder()
-                                    .success(true)
-                                    .message("Coupon is valid")
-                                    .data(coupon)
-                                    .build()
-                    );
-                })
-                .orElse(ResponseEntity.badRequest().body(
-                        ApiResponse.<Coupon>builder()
-                                .success(false)
-                                .message("Invalid coupon code")
-                                .build()
-                ));
-    }
-
-    @PostMapping
-    @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<ApiResponse<Coupon>> createCoupon(@RequestBody Coupon coupon) {
-        if (couponRepository.findByCode(coupon.getCode()).isPresent()) {
+    public ResponseEntity<ApiResponse<Coupon>> checkCoupon(@RequestParam String code,
+                                                           @RequestParam(required = false) Double amount) {
+        try {
+            Coupon coupon = couponEngine.validate(code, amount);
+            return ResponseEntity.ok(
+                    ApiResponse.<Coupon>builder()
+                            .success(true)
+                            .message("Coupon is valid")
+                            .data(coupon)
+                            .build()
+            );
+        } catch (CommonException e) {
             return ResponseEntity.badRequest().body(
                     ApiResponse.<Coupon>builder()
                             .success(false)
-                            .message("Coupon code already exists")
+                            .message(e.getMessage())
                             .build()
             );
         }
-        Coupon saved = couponRepository.save(coupon);
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<List<Coupon>>> getAllCoupons() {
+        return ResponseEntity.ok(
+                ApiResponse.<List<Coupon>>builder()
+                        .success(true)
+                        .message("Coupons")
+                        .data(couponService.getAllCoupons())
+                        .build()
+        );
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Coupon>> createCoupon(@RequestBody Coupon coupon) {
+        Coupon saved = couponService.createCoupon(coupon);
         return ResponseEntity.ok(
                 ApiResponse.<Coupon>builder()
                         .success(true)
@@ -76,4 +71,18 @@ public class CouponController {
                         .build()
         );
     }
+
+    @PutMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Update a coupon's discount, limits, expiry or active flag")
+    public ResponseEntity<ApiResponse<Coupon>> updateCoupon(@PathVariable UUID id, @RequestBody Coupon coupon) {
+        Coupon saved = couponService.updateCoupon(id, coupon);
+        return ResponseEntity.ok(
+                ApiResponse.<Coupon>builder()
+                        .success(true)
+                        .message("Coupon updated")
+                        .data(saved)
+                        .build()
+        );
+    }
 }
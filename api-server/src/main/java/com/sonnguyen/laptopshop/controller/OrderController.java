@@ -1,19 +1,36 @@
 package com.sonnguyen.laptopshop.controller;
 
+import com.sonnguyen.laptopshop.exception.CommonException;
 import com.sonnguyen.laptopshop.payload.request.OrderRequest;
+import com.sonnguyen.laptopshop.payload.request.OrderStatusTransitionRequest;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
 import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderStatusTransitionResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderTicketResponse;
+import com.sonnguyen.laptopshop.service.OrderArchiveService;
+import com.sonnguyen.laptopshop.service.OrderExportService;
+import com.sonnguyen.laptopshop.service.OrderIntakeQueue;
 import com.sonnguyen.laptopshop.service.OrderService;
+import com.sonnguyen.laptopshop.service.OrderStatusService;
+import com.sonnguyen.laptopshop.utils.SortFields;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/orders")
@@ -21,48 +38,97 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderIntakeQueue orderIntakeQueue;
+    private final OrderExportService orderExportService;
+    private final OrderStatusService orderStatusService;
+    private final OrderArchiveService orderArchiveService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderIntakeQueue orderIntakeQueue,
+                           OrderExportService orderExportService, OrderStatusService orderStatusService,
+                           OrderArchiveService orderArchiveService) {
         this.orderService = orderService;
+        this.orderIntakeQueue = orderIntakeQueue;
+        this.orderExportService = orderExportService;
+        this.orderStatusService = orderStatusService;
+        this.orderArchiveService = orderArchiveService;
     }
 
     @PostMapping
     public ResponseEntity<OrderResponse> createOrder(
             @Valid @RequestBody OrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
         if (authentication == null) {
             return ResponseEntity.status(401).build();
         }
         String username = authentication.getName();
-        OrderResponse order = orderService.createOrder(username, request);
+        OrderResponse order = orderService.createOrder(username, request, idempotencyKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(order);
     }
 
+    // Queued intake: responds 202 with a ticket once the order is logged; poll or subscribe for the outcome
+    @PostMapping("/async")
+    public ResponseEntity<OrderTicketResponse> submitOrder(
+            @Valid @RequestBody OrderRequest request,
+            Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        OrderTicketResponse ticket = orderIntakeQueue.submit(authentication.getName(), request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ticket);
+    }
+
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<OrderTicketResponse> getTicket(@PathVariable UUID ticketId, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok(orderIntakeQueue.getTicket(ticketId, authentication.getName()));
+    }
+
+    // Server-sent events: the current status, then the final one
+    @GetMapping(value = "/tickets/{ticketId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeTicket(@PathVariable UUID ticketId, Authentication authentication) {
+        if (authentication == null) {
+            throw new CommonException("Unauthorized", HttpStatus.UNAUTHORIZED);
+        }
+        return orderIntakeQueue.subscribe(ticketId, authentication.getName());
+    }
+
     @GetMapping("/my-orders")
-    public ResponseEntity<List<OrderResponse>> getMyOrders(Authentication authentication) {
+    public ResponseEntity<CursorPageResponse<OrderResponse>> getMyOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "orderDate") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            Authentication authentication) {
         if (authentication == null) {
             return ResponseEntity.status(401).build();
         }
         String username = authentication.getName();
-        List<OrderResponse> orders = orderService.getUserOrders(username);
-        return ResponseEntity.ok(orders);
+        Sort sort = SortFields.resolve(SortFields.ORDER, sortBy, sortDir);
+        return ResponseEntity.ok(orderService.getOrderHistory(username, status, sort, cursor, size, includeArchived));
     }
 
     @GetMapping("/my-orders/{status}")
     public ResponseEntity<List<OrderResponse>> getMyOrdersByStatus(
             @PathVariable String status,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
             Authentication authentication) {
         if (authentication == null) {
             return ResponseEntity.status(401).build();
         }
         String username = authentication.getName();
-        List<OrderResponse> orders = orderService.getUserOrdersByStatus(username, status);
+        List<OrderResponse> orders = orderService.getUserOrdersByStatus(username, status, includeArchived);
         return ResponseEntity.ok(orders);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<OrderResponse> getOrderById(@PathVariable Long id) {
-        return orderService.getOrderById(id)
+    public ResponseEntity<OrderResponse> getOrderById(@PathVariable Long id,
+                                                      @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return orderService.getOrderById(id, includeArchived)
                 .map(order -> ResponseEntity.ok(order))
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -82,6 +148,24 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageResponse<OrderResponse>> scrollOrders(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        Sort sort = SortFields.resolve(SortFields.ORDER, sortBy, sortDir);
+        return ResponseEntity.ok(orderService.scrollOrders(status, sort, cursor, size, includeArchived));
+    }
+
     @GetMapping("/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Page<OrderResponse>> getOrdersByStatus(
@@ -98,15 +182,29 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    // Every order with its lines, streamed as it is read: format=json (an array), ndjson or csv
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<OrderResponse>> getAllOrdersWithoutPagination(Authentication authentication) {
+    public ResponseEntity<StreamingResponseBody> getAllOrdersWithoutPagination(
+            @RequestParam(defaultValue = "json") String format,
+            @RequestParam(required = false) String status,
+            Authentication authentication) {
         if (authentication == null) {
             return ResponseEntity.status(401).build();
         }
-        
-        List<OrderResponse> orders = orderService.getAllOrdersWithoutPagination();
-        return ResponseEntity.ok(orders);
+
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new CommonException("Unsupported export format: " + format, HttpStatus.BAD_REQUEST);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()));
+        if (exportFormat != OrderExportService.Format.JSON) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders." + exportFormat.getExtension());
+        }
+        return response.body(out -> orderExportService.export(exportFormat, status, out));
     }
 
     @PutMapping("/{id}/status")
@@ -119,8 +217,25 @@ public class OrderController {
             return ResponseEntity.status(401).build();
         }
         
-        return orderService.updateOrderStatus(id, status)
+        return orderStatusService.updateStatus(id, status)
                 .map(order -> ResponseEntity.ok(order))
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    // Moves many orders at once, e.g. every PROCESSING order to SHIPPED
+    @PostMapping("/bulk/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OrderStatusTransitionResponse> bulkUpdateStatus(@RequestBody OrderStatusTransitionRequest request) {
+        return ResponseEntity.ok(orderStatusService.transition(request));
+    }
+
+    // Archives finished orders now instead of waiting for the next scheduled run
+    @PostMapping("/archive")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> archiveOrders() {
+        if (!orderArchiveService.start()) {
+            throw new CommonException("Order archiving is already running", HttpStatus.CONFLICT);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("running", true));
+    }
 }
@@ -1,8 +1,19 @@
 package com.sonnguyen.laptopshop.controller;
 
+import com.sonnguyen.laptopshop.payload.request.ProductBulkRequest;
+import com.sonnguyen.laptopshop.payload.request.ProductFilterRequest;
 import com.sonnguyen.laptopshop.payload.request.ProductRequest;
+import com.sonnguyen.laptopshop.payload.response.BulkOperationResponse;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
+import com.sonnguyen.laptopshop.payload.response.ImportJobResponse;
+import com.sonnguyen.laptopshop.payload.response.ProductFacetsResponse;
 import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import com.sonnguyen.laptopshop.service.ImportJobService;
+import com.sonnguyen.laptopshop.service.ProductBulkService;
 import com.sonnguyen.laptopshop.service.ProductService;
+import com.sonnguyen.laptopshop.service.SalesLeaderboard;
+import com.sonnguyen.laptopshop.utils.SecurityUtils;
+import com.sonnguyen.laptopshop.utils.SortFields;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
@@ -16,6 +27,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/products")
@@ -26,11 +38,18 @@ public class ProductController {
     private final ProductService productService;
     private final com.sonnguyen.laptopshop.service.ExcelService excelService;
 
+    private final ImportJobService importJobService;
+    private final ProductBulkService productBulkService;
+
     private final com.fasterxml.jackson.databind.ObjectMapper objectMapper;
 
-    public ProductController(ProductService productService, com.sonnguyen.laptopshop.service.ExcelService excelService, com.fasterxml.jackson.databind.ObjectMapper objectMapper) {
+    public ProductController(ProductService productService, com.sonnguyen.laptopshop.service.ExcelService excelService,
+                             ImportJobService importJobService, ProductBulkService productBulkService,
+                             com.fasterxml.jackson.databind.ObjectMapper objectMapper) {
         this.productService = productService;
         this.excelService = excelService;
+        this.importJobService = importJobService;
+        this.productBulkService = productBulkService;
         this.objectMapper = objectMapper;
     }
 
@@ -41,14 +60,24 @@ public class ProductController {
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
         
-        Sort sort = sortDir.equalsIgnoreCase("desc") ? 
-            Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        Sort sort = SortFields.resolve(SortFields.PRODUCT, sortBy, sortDir);
         Pageable pageable = PageRequest.of(page, size, sort);
         
         Page<ProductResponse> products = productService.getAllProducts(pageable);
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageResponse<ProductResponse>> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+
+        Sort sort = SortFields.resolve(SortFields.PRODUCT, sortBy, sortDir);
+        return ResponseEntity.ok(productService.scrollProducts(null, sort, cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id) {
         return productService.getProductById(id)
@@ -166,11 +195,12 @@ public class ProductController {
 
     @GetMapping("/top-selling")
     public ResponseEntity<Page<ProductResponse>> getTopSellingProducts(
+            @RequestParam(defaultValue = "all") String period,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<ProductResponse> products = productService.getTopSellingProducts(pageable);
+        Page<ProductResponse> products = productService.getTopSellingProducts(SalesLeaderboard.Period.fromParam(period), pageable);
         return ResponseEntity.ok(products);
     }
 
@@ -178,6 +208,7 @@ public class ProductController {
     public ResponseEntity<Page<ProductResponse>> filterProducts(
             @RequestParam(required = false) List<String> factory,
             @RequestParam(required = false) List<String> target,
+            @RequestParam(required = false) List<Long> category,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice,
             @RequestParam(required = false) String keyword,
@@ -186,46 +217,121 @@ public class ProductController {
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir) {
 
-        Sort sort = sortDir.equalsIgnoreCase("desc") ?
-                Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        Sort sort = SortFields.resolve(SortFields.PRODUCT, sortBy, sortDir);
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        Page<ProductResponse> products = productService.getProductsWithFilters(factory, target, minPrice, maxPrice, keyword, pageable);
+        ProductFilterRequest filter = toFilter(factory, target, category, minPrice, maxPrice, keyword);
+        Page<ProductResponse> products = productService.getProductsWithFilters(filter, pageable);
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/filter/scroll")
+    public ResponseEntity<CursorPageResponse<ProductResponse>> scrollFilteredProducts(
+            @RequestParam(required = false) List<String> factory,
+            @RequestParam(required = false) List<String> target,
+            @RequestParam(required = false) List<Long> category,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+
+        Sort sort = SortFields.resolve(SortFields.PRODUCT, sortBy, sortDir);
+        ProductFilterRequest filter = toFilter(factory, target, category, minPrice, maxPrice, keyword);
+        return ResponseEntity.ok(productService.scrollProducts(filter, sort, cursor, size));
+    }
+
+    @GetMapping("/filter/faceted")
+    public ResponseEntity<ProductFacetsResponse> filterProductsWithFacets(
+            @RequestParam(required = false) List<String> factory,
+            @RequestParam(required = false) List<String> target,
+            @RequestParam(required = false) List<Long> category,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+
+        Sort sort = SortFields.resolve(SortFields.PRODUCT, sortBy, sortDir);
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        ProductFilterRequest filter = toFilter(factory, target, category, minPrice, maxPrice, keyword);
+        return ResponseEntity.ok(productService.getFacetedProducts(filter, pageable));
+    }
+
+    private static ProductFilterRequest toFilter(List<String> factory, List<String> target, List<Long> category,
+                                                 Double minPrice, Double maxPrice, String keyword) {
+        ProductFilterRequest filter = new ProductFilterRequest();
+        filter.setFactories(factory);
+        filter.setTargets(target);
+        filter.setCategoryIds(category);
+        filter.setMinPrice(minPrice);
+        filter.setMaxPrice(maxPrice);
+        filter.setKeyword(keyword);
+        return filter;
+    }
+
     @PostMapping("/bulk")
-    public ResponseEntity<String> bulkCreate(@RequestBody List<com.sonnguyen.laptopshop.payload.request.BulkProductRequest> products) {
-        try {
-            this.productService.saveBulk(products);
-            return ResponseEntity.ok("Imported " + products.size() + " products successfully");
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Failed to import: " + e.getMessage());
-        }
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportJobResponse> bulkCreate(@RequestBody List<com.sonnguyen.laptopshop.payload.request.BulkProductRequest> products) {
+        ImportJobResponse job = importJobService.submitBulk(products, SecurityUtils.getCurrentUser().getUsername());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
     }
+
     @DeleteMapping("/bulk")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Void> bulkDelete(@RequestBody List<Long> ids) {
-        this.productService.deleteProducts(ids);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<BulkOperationResponse> bulkDelete(@RequestBody List<Long> ids) {
+        ProductBulkRequest request = new ProductBulkRequest();
+        request.setIds(ids);
+        return ResponseEntity.ok(productBulkService.delete(request));
+    }
+
+    @PostMapping("/bulk/delete")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkOperationResponse> bulkDeleteMatching(@RequestBody ProductBulkRequest request) {
+        return ResponseEntity.ok(productBulkService.delete(request));
+    }
+
+    @PostMapping("/bulk/price")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkOperationResponse> bulkChangePrice(@RequestBody ProductBulkRequest request) {
+        return ResponseEntity.ok(productBulkService.changePrice(request));
+    }
+
+    @PostMapping("/bulk/stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkOperationResponse> bulkAdjustStock(@RequestBody ProductBulkRequest request) {
+        return ResponseEntity.ok(productBulkService.adjustStock(request));
     }
 
     @PostMapping(value = "/upload", consumes = { org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE })
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<String> uploadFile(@RequestParam("file") org.springframework.web.multipart.MultipartFile file) {
+    public ResponseEntity<?> uploadFile(@RequestParam("file") org.springframework.web.multipart.MultipartFile file) {
         if (com.sonnguyen.laptopshop.utils.ExcelHelper.hasExcelFormat(file)) {
-            try {
-                excelService.save(file);
-                return ResponseEntity.status(HttpStatus.OK).body("Uploaded the file successfully: " + file.getOriginalFilename());
-            } catch (Exception e) {
-                e.printStackTrace(); // Log to server console
-                return ResponseEntity.status(HttpStatus.EXPECTATION_FAILED).body("Fail to upload file: " + e.getMessage());
-            }
+            ImportJobResponse job = importJobService.submitExcel(file, SecurityUtils.getCurrentUser().getUsername());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
         }
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Please upload an excel file!");
     }
 
+    @GetMapping("/imports")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Page<ImportJobResponse>> getImportJobs(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(importJobService.getJobs(PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/imports/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ImportJobResponse> getImportJob(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(importJobService.getJob(jobId));
+    }
+
     @GetMapping("/template")
     public ResponseEntity<org.springframework.core.io.Resource> getTemplate() {
         String filename = "products_template.xlsx";
@@ -0,0 +1,29 @@
+package com.sonnguyen.laptopshop.event;
+
+import com.sonnguyen.laptopshop.model.Category;
+import lombok.Getter;
+
+// Published by category writes so in-memory lookups can follow them after the transaction commits.
+@Getter
+public class CategoryChangedEvent {
+
+    private final Category category;
+    private final Long deletedId;
+
+    private CategoryChangedEvent(Category category, Long deletedId) {
+        this.category = category;
+        this.deletedId = deletedId;
+    }
+
+    public static CategoryChangedEvent saved(Category category) {
+        return new CategoryChangedEvent(category, null);
+    }
+
+    public static CategoryChangedEvent deleted(Long categoryId) {
+        return new CategoryChangedEvent(null, categoryId);
+    }
+
+    public boolean isDeleted() {
+        return deletedId != null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.sonnguyen.laptopshop.event;
+
+import lombok.Getter;
+
+// Published by coupon writes so the in-memory coupon cache reloads after the transaction commits.
+@Getter
+public class CouponChangedEvent {
+
+    private final String code;
+
+    public CouponChangedEvent(String code) {
+        this.code = code;
+    }
+}
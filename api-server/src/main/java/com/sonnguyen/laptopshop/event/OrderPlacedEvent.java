@@ -0,0 +1,21 @@
+package com.sonnguyen.laptopshop.event;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Published by checkout once per order; quantities are units sold per product id.
+@Getter
+public class OrderPlacedEvent {
+
+    private final Long orderId;
+    private final Instant placedAt;
+    private final Map<Long, Long> quantities;
+
+    public OrderPlacedEvent(Long orderId, Instant placedAt, Map<Long, Long> quantities) {
+        this.orderId = orderId;
+        this.placedAt = placedAt;
+        this.quantities = Map.copyOf(quantities);
+    }
+}
@@ -0,0 +1,21 @@
+package com.sonnguyen.laptopshop.event;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+// Published once per transaction of status changes; previousStatuses maps each changed order id to
+// the status it left, all of them now in status, and totalPrices to the order's total.
+@Getter
+public class OrderStatusChangedEvent {
+
+    private final String status;
+    private final Map<Long, String> previousStatuses;
+    private final Map<Long, Double> totalPrices;
+
+    public OrderStatusChangedEvent(String status, Map<Long, String> previousStatuses, Map<Long, Double> totalPrices) {
+        this.status = status;
+        this.previousStatuses = Map.copyOf(previousStatuses);
+        this.totalPrices = Map.copyOf(totalPrices);
+    }
+}
@@ -0,0 +1,46 @@
+package com.sonnguyen.laptopshop.event;
+
+import com.sonnguyen.laptopshop.model.Product;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+
+// Published by product writes; in-memory views listen for it after the transaction commits.
+@Getter
+public class ProductChangedEvent {
+
+    public enum Type {
+        SAVED,
+        DELETED,
+        STOCK_CHANGED
+    }
+
+    private final Type type;
+    private final List<Product> products;
+    private final List<Long> productIds;
+
+    private ProductChangedEvent(Type type, List<Product> products, List<Long> productIds) {
+        this.type = type;
+        this.products = products;
+        this.productIds = productIds;
+    }
+
+    public static ProductChangedEvent saved(Collection<Product> products) {
+        List<Product> list = List.copyOf(products);
+        return new ProductChangedEvent(Type.SAVED, list, list.stream().map(Product::getId).toList());
+    }
+
+    public static ProductChangedEvent saved(Product product) {
+        return saved(List.of(product));
+    }
+
+    public static ProductChangedEvent deleted(Collection<Long> productIds) {
+        return new ProductChangedEvent(Type.DELETED, List.of(), List.copyOf(productIds));
+    }
+
+    // Only quantity/sold changed, e.g. by checkout; listeners that need the values reload them
+    public static ProductChangedEvent stockChanged(Collection<Long> productIds) {
+        return new ProductChangedEvent(Type.STOCK_CHANGED, List.of(), List.copyOf(productIds));
+    }
+}
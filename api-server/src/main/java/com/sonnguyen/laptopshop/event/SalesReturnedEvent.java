@@ -0,0 +1,25 @@
+package com.sonnguyen.laptopshop.event;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Published when cancelled orders put their units back; one line per order line, with the instant
+// the units were sold, so day-windowed tallies can take them off the day that counted them.
+@Getter
+public class SalesReturnedEvent {
+
+    private final Set<Long> orderIds;
+    private final List<Line> lines;
+
+    public SalesReturnedEvent(Collection<Long> orderIds, List<Line> lines) {
+        this.orderIds = Set.copyOf(orderIds);
+        this.lines = List.copyOf(lines);
+    }
+
+    public record Line(Long productId, Instant soldAt, long quantity) {
+    }
+}
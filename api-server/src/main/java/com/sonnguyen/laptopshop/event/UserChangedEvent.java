@@ -0,0 +1,31 @@
+package com.sonnguyen.laptopshop.event;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+// Published when a user account is created or deleted.
+@Getter
+public class UserChangedEvent {
+
+    public enum Type {
+        CREATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final UUID userId;
+
+    private UserChangedEvent(Type type, UUID userId) {
+        this.type = type;
+        this.userId = userId;
+    }
+
+    public static UserChangedEvent created(UUID userId) {
+        return new UserChangedEvent(Type.CREATED, userId);
+    }
+
+    public static UserChangedEvent deleted(UUID userId) {
+        return new UserChangedEvent(Type.DELETED, userId);
+    }
+}
@@ -2,6 +2,7 @@ package com.sonnguyen.laptopshop.exception;
 
 import com.sonnguyen.laptopshop.payload.response.ApiResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
@@ -65,6 +66,17 @@ public class RestControlExceptionHandle {
         );
     }
 
+    @ExceptionHandler({ObjectOptimisticLockingFailureException.class})
+    @ResponseBody
+    public ResponseEntity<ApiResponse<?>> resolveOptimisticLockingException(ObjectOptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                ApiResponse.builder()
+                        .message("The record was changed by another request, reload it and try again")
+                        .success(false)
+                        .build()
+        );
+    }
+
     @ExceptionHandler({Exception.class})
     @ResponseBody
     public ResponseEntity<ApiResponse<?>> resolveAccessDeniedException(Exception e) {
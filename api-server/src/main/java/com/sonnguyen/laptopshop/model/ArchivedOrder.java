@@ -0,0 +1,45 @@
+package com.sonnguyen.laptopshop.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+// A COMPLETED or CANCELLED order moved out of orders by OrderArchiveService. Same columns and id as
+// the original, read only when a caller asks for archived history.
+@Data
+@Entity
+@Table(name = "orders_archive")
+public class ArchivedOrder {
+    @Id
+    private Long id;
+
+    private Double totalPrice;
+
+    private String couponCode;
+    private Double discountAmount;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    @JsonIgnore
+    private User user;
+
+    private String receiverName;
+    private String receiverAddress;
+    private String receiverPhone;
+    private String status;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant orderDate;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant updatedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant archivedAt;
+}
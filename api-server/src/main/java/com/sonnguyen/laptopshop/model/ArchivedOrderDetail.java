@@ -0,0 +1,35 @@
+package com.sonnguyen.laptopshop.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+// A line of an ArchivedOrder, with the id it had in order_details
+@Data
+@Entity
+@Table(name = "order_details_archive")
+public class ArchivedOrderDetail {
+    @Id
+    private Long id;
+
+    private Long quantity;
+    private Double price;
+
+    @ManyToOne
+    @JoinColumn(name = "order_id")
+    @JsonIgnore
+    private ArchivedOrder order;
+
+    @ManyToOne
+    @JoinColumn(name = "product_id")
+    private Product product;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant updatedAt;
+}
@@ -26,4 +26,8 @@ public class Coupon {
     private LocalDate expiryDate;
 
     private boolean active = true;
+
+    // redemptions over all users and per user; null means no limit
+    private Integer maxUses;
+    private Integer maxUsesPerUser;
 }
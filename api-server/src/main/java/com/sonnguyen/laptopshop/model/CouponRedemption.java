@@ -0,0 +1,35 @@
+package com.sonnguyen.laptopshop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// One use of a coupon, written in the order's transaction. Usage caps are counted from these rows
+// instead of a counter on the coupon, so redemptions of one code never contend on a single row.
+@Data
+@Entity
+@Table(name = "coupon_redemptions",
+        indexes = {
+                @Index(name = "idx_coupon_redemptions_coupon_user", columnList = "coupon_id, user_id"),
+                @Index(name = "idx_coupon_redemptions_order", columnList = "order_id")
+        })
+public class CouponRedemption {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "coupon_id", nullable = false)
+    private UUID couponId;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    private Double discountAmount;
+
+    private Instant createdAt;
+}
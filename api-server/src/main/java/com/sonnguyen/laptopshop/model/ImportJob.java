@@ -0,0 +1,61 @@
+package com.sonnguyen.laptopshop.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Entity
+@Table(name = "import_jobs")
+public class ImportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    private ImportJobType type;
+
+    @Enumerated(EnumType.STRING)
+    private ImportJobStatus status = ImportJobStatus.QUEUED;
+
+    private String fileName;
+    // staged upload on local disk, removed when the job finishes
+    private String stagedPath;
+    private String createdBy;
+
+    @Column(columnDefinition = "bigint default 0")
+    private long importedRows;
+    @Column(columnDefinition = "bigint default 0")
+    private long failedRows;
+    // last source row covered by a committed chunk; a resumed job continues after it
+    @Column(columnDefinition = "int default 0")
+    private int lastCommittedRow;
+
+    private String error;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant finishedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant updatedAt;
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = Instant.now();
+        this.updatedAt = Instant.now();
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,24 @@
+package com.sonnguyen.laptopshop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@Entity
+@Table(name = "import_job_errors", indexes = @Index(name = "idx_import_job_errors_job", columnList = "job_id, source_row"))
+public class ImportJobError {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    @Column(name = "source_row")
+    private int rowNumber;
+
+    @Column(length = 1000)
+    private String message;
+}
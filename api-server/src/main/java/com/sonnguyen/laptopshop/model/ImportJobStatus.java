@@ -0,0 +1,8 @@
+package com.sonnguyen.laptopshop.model;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
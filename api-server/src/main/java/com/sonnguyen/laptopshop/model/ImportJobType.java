@@ -0,0 +1,6 @@
+package com.sonnguyen.laptopshop.model;
+
+public enum ImportJobType {
+    EXCEL,
+    BULK_JSON
+}
@@ -0,0 +1,36 @@
+package com.sonnguyen.laptopshop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Result of an order request sent with an Idempotency-Key, written in the order's transaction so a
+// retry after a restart still gets the original order back
+@Data
+@Entity
+@Table(name = "order_idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"username", "idempotency_key"}),
+        indexes = @Index(name = "idx_order_idempotency_keys_created", columnList = "created_at"))
+public class OrderIdempotencyKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    // hash of the request body; the same key with a different body is rejected
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    private Long orderId;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String response;
+
+    private Instant createdAt;
+}
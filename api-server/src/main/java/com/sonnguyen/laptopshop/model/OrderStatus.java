@@ -0,0 +1,53 @@
+package com.sonnguyen.laptopshop.model;
+
+import java.util.*;
+
+// Lifecycle of an order; Order.status stores the name. Every status change goes through
+// OrderStatusService, which only applies the transitions listed here.
+public enum OrderStatus {
+    PENDING,
+    PROCESSING,
+    SHIPPED,
+    COMPLETED,
+    CANCELLED;
+
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        TRANSITIONS.put(PENDING, EnumSet.of(PROCESSING, CANCELLED));
+        TRANSITIONS.put(PROCESSING, EnumSet.of(SHIPPED, COMPLETED, CANCELLED));
+        TRANSITIONS.put(SHIPPED, EnumSet.of(COMPLETED));
+        TRANSITIONS.put(COMPLETED, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(CANCELLED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    public boolean canTransitionTo(OrderStatus next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    public boolean isFinal() {
+        return TRANSITIONS.get(this).isEmpty();
+    }
+
+    // Statuses an order may be in to move to target
+    public static Set<OrderStatus> sourcesOf(OrderStatus target) {
+        Set<OrderStatus> sources = EnumSet.noneOf(OrderStatus.class);
+        for (OrderStatus status : values()) {
+            if (status.canTransitionTo(target)) {
+                sources.add(status);
+            }
+        }
+        return sources;
+    }
+
+    public static Optional<OrderStatus> parse(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(valueOf(value.trim().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.sonnguyen.laptopshop.model;
+
+public enum OrderTicketStatus {
+    QUEUED,
+    PROCESSING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isFinal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -41,6 +41,13 @@ public class Product {
     private Long quantity;
 
     private Long sold = 0L;
+
+    // checkout changes stock with conditional UPDATEs that bump this too, so an entity save that
+    // read the row before a checkout fails instead of writing back a stale quantity
+    @Version
+    @Column(columnDefinition = "bigint not null default 0")
+    private Long version = 0L;
+
     private String factory;
     private String target;
 
@@ -0,0 +1,56 @@
+package com.sonnguyen.laptopshop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Sales of completed orders per hour or day bucket, in total and per product, factory and category.
+// Buckets are keyed by the order date; rows only ever grow, through SalesRollupRepository.addAll.
+@Data
+@Entity
+@Table(name = "sales_rollups", uniqueConstraints = @UniqueConstraint(name = "uk_sales_rollups_bucket",
+        columnNames = {"granularity", "dimension", "bucket_start", "dimension_key"}))
+public class SalesRollup {
+
+    public enum Granularity {
+        HOUR,
+        DAY
+    }
+
+    public enum Dimension {
+        TOTAL,
+        PRODUCT,
+        FACTORY,
+        CATEGORY
+    }
+
+    // dimension key of the TOTAL rows
+    public static final String TOTAL_KEY = "all";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Granularity granularity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Dimension dimension;
+
+    // product or category id, factory name, or TOTAL_KEY
+    @Column(nullable = false, length = 100)
+    private String dimensionKey;
+
+    // latest product or category name seen for the key
+    private String label;
+
+    @Column(nullable = false)
+    private Instant bucketStart;
+
+    private double revenue;
+    private long orders;
+    private long units;
+}
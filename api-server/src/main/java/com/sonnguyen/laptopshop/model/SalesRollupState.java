@@ -0,0 +1,32 @@
+package com.sonnguyen.laptopshop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Progress of the sales rollup backfill. Orders with an id above backfillCursor are left to the
+// backfill while it runs; completions of the others are rolled up as they happen.
+@Data
+@Entity
+@Table(name = "sales_rollup_state")
+public class SalesRollupState {
+    public static final long SINGLETON_ID = 1L;
+    // revenue definition the rollups are built with; 1 is net of coupon discounts (see SaleLines).
+    // Rollups from an older one are rebuilt at startup.
+    public static final int REVENUE_BASIS = 1;
+
+    @Id
+    private Long id = SINGLETON_ID;
+
+    @Column(columnDefinition = "bigint default 0")
+    private long backfillCursor;
+
+    @Column(columnDefinition = "int default 0")
+    private int revenueBasis;
+
+    private Instant backfillStartedAt;
+
+    // null while a backfill is running or was interrupted
+    private Instant backfillCompletedAt;
+}
@@ -0,0 +1,23 @@
+package com.sonnguyen.laptopshop.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Highest stock journal sequence whose deltas are applied to the products table. Written in the same
+// transaction as the deltas, so a replay after a crash never applies an entry twice.
+@Data
+@Entity
+@Table(name = "stock_journal_checkpoints")
+public class StockJournalCheckpoint {
+    public static final long SINGLETON_ID = 1L;
+
+    @Id
+    private Long id = SINGLETON_ID;
+
+    @Column(columnDefinition = "bigint default 0")
+    private long lastSequence;
+
+    private Instant updatedAt;
+}
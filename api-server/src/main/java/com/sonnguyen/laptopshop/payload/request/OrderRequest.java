@@ -20,4 +20,7 @@ public class OrderRequest {
 
     @NotNull(message = "Cart items are required")
     private List<CartItemRequest> cartItems;
+
+    // optional; its discount is taken off the total
+    private String couponCode;
 }
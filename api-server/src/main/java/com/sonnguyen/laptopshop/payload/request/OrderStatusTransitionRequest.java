@@ -0,0 +1,22 @@
+package com.sonnguyen.laptopshop.payload.request;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+// Moves the listed orders, or every order matching the filter, to status; ids or filter is required
+@Data
+public class OrderStatusTransitionRequest {
+    private List<Long> ids;
+    private Filter filter;
+    private String status;
+
+    @Data
+    public static class Filter {
+        // current status of the orders to move
+        private String status;
+        // only orders placed before this instant, when set
+        private Instant orderedBefore;
+    }
+}
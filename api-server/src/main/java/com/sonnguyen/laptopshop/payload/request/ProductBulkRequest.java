@@ -0,0 +1,18 @@
+package com.sonnguyen.laptopshop.payload.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Targets the listed ids, every product matching the filter, or with all set every product; exactly
+// one of the three is required, and a filter must have at least one criterion
+@Data
+public class ProductBulkRequest {
+    private List<Long> ids;
+    private ProductFilterRequest filter;
+    private boolean all;
+    // price change in percent, e.g. -10 for a 10% discount
+    private Double percent;
+    // units added to (or, when negative, removed from) each product's stock
+    private Long delta;
+}
@@ -0,0 +1,15 @@
+package com.sonnguyen.laptopshop.payload.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductFilterRequest {
+    private List<String> factories;
+    private List<String> targets;
+    private List<Long> categoryIds;
+    private Double minPrice;
+    private Double maxPrice;
+    private String keyword;
+}
@@ -29,4 +29,7 @@ public class ProductRequest {
     
     @NotNull(message = "Category ID is required")
     private Long categoryId;
+
+    // version of the product the edit is based on; required when updating
+    private Long version;
 }
@@ -0,0 +1,16 @@
+package com.sonnguyen.laptopshop.payload.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// An order accepted by the asynchronous intake, as written to its log
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueuedOrderRequest {
+    private String username;
+    // "ticket:<id>", stored through OrderIdempotencyStore so a replayed ticket is never placed twice
+    private String idempotencyKey;
+    private OrderRequest order;
+}
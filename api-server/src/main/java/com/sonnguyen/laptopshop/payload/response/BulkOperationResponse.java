@@ -0,0 +1,13 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkOperationResponse {
+    // products selected by the ids or filter
+    private int matched;
+    // products actually changed
+    private int affected;
+}
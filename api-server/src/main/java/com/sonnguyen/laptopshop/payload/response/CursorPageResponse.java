@@ -0,0 +1,14 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Slice-style page for keyset pagination: no total count, only a token for the next page
+@Data
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+}
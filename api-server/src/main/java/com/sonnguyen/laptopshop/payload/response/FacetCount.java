@@ -0,0 +1,14 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCount {
+    private String value;
+    private String label;
+    private long count;
+}
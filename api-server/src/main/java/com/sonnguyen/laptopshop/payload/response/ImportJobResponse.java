@@ -0,0 +1,35 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.sonnguyen.laptopshop.model.ImportJobStatus;
+import com.sonnguyen.laptopshop.model.ImportJobType;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class ImportJobResponse {
+    private UUID id;
+    private ImportJobType type;
+    private ImportJobStatus status;
+    private String fileName;
+    private long processedRows;
+    private long importedRows;
+    private long failedRows;
+    private int lastCommittedRow;
+    // processed rows per second of running time
+    private double rowsPerSecond;
+    private String error;
+    private List<ImportRowError> errors;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant createdAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant finishedAt;
+}
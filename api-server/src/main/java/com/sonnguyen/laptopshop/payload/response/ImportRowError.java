@@ -0,0 +1,12 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImportRowError {
+    // 1-based row number as shown in Excel
+    private int row;
+    private String message;
+}
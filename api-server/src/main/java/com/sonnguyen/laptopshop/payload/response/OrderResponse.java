@@ -10,6 +10,8 @@ import java.util.List;
 public class OrderResponse {
     private Long id;
     private Double totalPrice;
+    private String couponCode;
+    private Double discountAmount;
     private String receiverName;
     private String receiverAddress;
     private String receiverPhone;
@@ -0,0 +1,17 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class OrderStatusTransitionResponse {
+    private String status;
+    // orders moved to status
+    private int applied;
+    // listed orders that don't exist or can't move to status from where they are
+    private int rejected;
+    private List<Long> rejectedIds;
+}
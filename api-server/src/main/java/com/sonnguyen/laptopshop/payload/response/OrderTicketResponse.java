@@ -0,0 +1,24 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.sonnguyen.laptopshop.model.OrderTicketStatus;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+public class OrderTicketResponse {
+    private UUID ticketId;
+    private OrderTicketStatus status;
+    private Long orderId;
+    private OrderResponse order;
+    // why the order was not placed
+    private String message;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant acceptedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant completedAt;
+}
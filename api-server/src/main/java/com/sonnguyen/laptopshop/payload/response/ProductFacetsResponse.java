@@ -0,0 +1,15 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+@Data
+public class ProductFacetsResponse {
+    private Page<ProductResponse> products;
+    private List<FacetCount> factories;
+    private List<FacetCount> targets;
+    private List<FacetCount> categories;
+    private List<FacetCount> priceRanges;
+}
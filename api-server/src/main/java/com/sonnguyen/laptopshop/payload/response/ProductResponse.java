@@ -18,6 +18,8 @@ public class ProductResponse {
     private String target;
     private Long categoryId;
     private String categoryName;
+    // sent back with an update, which fails with 409 if the product changed since
+    private Long version;
 
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
     private Instant createdAt;
@@ -0,0 +1,22 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+// Sales of completed orders for one combination of the grouped dimensions; dimensions that were
+// rolled up are left out
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SalesCubeRow {
+    private String factory;
+    private String target;
+    private Long categoryId;
+    private String categoryName;
+    // Monday the week starts on
+    private LocalDate week;
+    private double revenue;
+    private long units;
+    private long lines;
+}
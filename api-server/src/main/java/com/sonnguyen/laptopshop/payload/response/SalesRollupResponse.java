@@ -0,0 +1,20 @@
+package com.sonnguyen.laptopshop.payload.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.Instant;
+
+// A bucket of a sales series, or the sales of one product, factory or category over a range
+// (bucketStart is then null)
+@Data
+public class SalesRollupResponse {
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT")
+    private Instant bucketStart;
+    private String dimension;
+    private String key;
+    private String label;
+    private double revenue;
+    private long orders;
+    private long units;
+}
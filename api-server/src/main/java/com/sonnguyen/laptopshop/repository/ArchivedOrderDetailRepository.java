@@ -0,0 +1,30 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.ArchivedOrderDetail;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedOrderDetailRepository extends JpaRepository<ArchivedOrderDetail, Long> {
+
+    // lines of several archived orders with their products and categories, in one query
+    @EntityGraph(attributePaths = {"product", "product.category"})
+    List<ArchivedOrderDetail> findByOrderIdIn(Collection<Long> orderIds);
+
+    @Modifying
+    @Query("DELETE FROM ArchivedOrderDetail d WHERE d.product.id IN :productIds")
+    int deleteByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Modifying
+    @Query(value = "INSERT INTO order_details_archive (id, quantity, price, order_id, product_id, created_at, updated_at) " +
+            "SELECT id, quantity, price, order_id, product_id, created_at, updated_at FROM order_details " +
+            "WHERE order_id IN (:orderIds)", nativeQuery = true)
+    int copyFromOrderDetails(@Param("orderIds") Collection<Long> orderIds);
+}
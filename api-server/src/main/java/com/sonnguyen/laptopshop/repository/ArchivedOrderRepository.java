@@ -0,0 +1,47 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.ArchivedOrder;
+import com.sonnguyen.laptopshop.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long>, JpaSpecificationExecutor<ArchivedOrder> {
+    List<ArchivedOrder> findByUser(User user);
+
+    @Query("SELECT o FROM ArchivedOrder o WHERE o.status = :status")
+    Page<ArchivedOrder> findByStatus(@Param("status") String status, Pageable pageable);
+
+    @Query("SELECT o FROM ArchivedOrder o WHERE o.user = :user AND o.status = :status")
+    List<ArchivedOrder> findByUserAndStatus(@Param("user") User user, @Param("status") String status);
+
+    // rows of (status, orders, sum of total price)
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.totalPrice), 0) FROM ArchivedOrder o GROUP BY o.status")
+    List<Object[]> countAndSumByStatus();
+
+    @Query("SELECT o.id FROM ArchivedOrder o WHERE o.status = :status AND o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsByStatusAfter(@Param("status") String status, @Param("afterId") Long afterId, Pageable pageable);
+
+    // same rows as OrderRepository.findSaleLines
+    @Query("SELECT o.id, o.orderDate, o.totalPrice, p.id, p.name, p.factory, c.id, c.name, d.quantity, d.price, p.target " +
+            "FROM ArchivedOrder o LEFT JOIN ArchivedOrderDetail d ON d.order = o LEFT JOIN d.product p LEFT JOIN p.category c " +
+            "WHERE o.id IN :ids ORDER BY o.id")
+    List<Object[]> findSaleLines(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO orders_archive (id, total_price, coupon_code, discount_amount, user_id, receiver_name, " +
+            "receiver_address, receiver_phone, status, order_date, created_at, updated_at, archived_at) " +
+            "SELECT id, total_price, coupon_code, discount_amount, user_id, receiver_name, receiver_address, receiver_phone, " +
+            "status, order_date, created_at, updated_at, :archivedAt FROM orders WHERE id IN (:ids)", nativeQuery = true)
+    int copyFromOrders(@Param("ids") Collection<Long> ids, @Param("archivedAt") Instant archivedAt);
+}
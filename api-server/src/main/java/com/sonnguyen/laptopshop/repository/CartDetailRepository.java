@@ -4,8 +4,12 @@ import com.sonnguyen.laptopshop.model.Cart;
 import com.sonnguyen.laptopshop.model.CartDetail;
 import com.sonnguyen.laptopshop.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,4 +18,11 @@ public interface CartDetailRepository extends JpaRepository<CartDetail, Long> {
     List<CartDetail> findByCart(Cart cart);
     Optional<CartDetail> findByCartAndProduct(Cart cart, Product product);
     void deleteByCart(Cart cart);
+
+    @Query("SELECT DISTINCT d.cart.id FROM CartDetail d WHERE d.product.id IN :productIds")
+    List<Long> findCartIdsByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Modifying
+    @Query("DELETE FROM CartDetail d WHERE d.product.id IN :productIds")
+    int deleteByProductIdIn(@Param("productIds") Collection<Long> productIds);
 }
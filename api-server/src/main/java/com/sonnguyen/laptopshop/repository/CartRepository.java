@@ -3,8 +3,12 @@ package com.sonnguyen.laptopshop.repository;
 import com.sonnguyen.laptopshop.model.Cart;
 import com.sonnguyen.laptopshop.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +17,10 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUser(User user);
     Optional<Cart> findByUserId(UUID userId);
     Optional<Cart> findByUserUsername(String username);
+
+    // same total as CartService.updateCartSum, recomputed in SQL
+    @Modifying
+    @Query("UPDATE Cart c SET c.sum = CAST(COALESCE((SELECT SUM(d.quantity * d.price) FROM CartDetail d WHERE d.cart = c), 0) AS Integer) " +
+            "WHERE c.id IN :cartIds")
+    int recalculateSums(@Param("cartIds") Collection<Long> cartIds);
 }
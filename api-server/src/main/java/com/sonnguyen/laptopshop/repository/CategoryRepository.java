@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,7 +15,14 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
     boolean existsBySlug(String slug);
     boolean existsBySlugAndIdNot(String slug, Long id);
+
+    @Query("SELECT c.id, c.name, c.slug FROM Category c")
+    List<Object[]> findAllIdNameSlug();
     
+    // categoryId -> product count for every category in one GROUP BY
+    @Query("SELECT c.id, COUNT(p.id) FROM Category c LEFT JOIN c.products p GROUP BY c.id")
+    List<Object[]> countProductsPerCategory();
+
     @Query("SELECT COUNT(p) FROM Product p WHERE p.category.id = :categoryId")
     long countProductsByCategoryId(@Param("categoryId") Long categoryId);
 }
@@ -0,0 +1,22 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.CouponRedemption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface CouponRedemptionRepository extends JpaRepository<CouponRedemption, Long> {
+
+    // rows of (coupon id, redemptions)
+    @Query("SELECT r.couponId, COUNT(r) FROM CouponRedemption r GROUP BY r.couponId")
+    List<Object[]> countByCoupon();
+
+    long countByCouponIdAndUserId(UUID couponId, UUID userId);
+
+    List<CouponRedemption> findByOrderIdIn(Collection<Long> orderIds);
+}
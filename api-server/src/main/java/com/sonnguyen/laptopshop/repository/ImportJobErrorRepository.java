@@ -0,0 +1,15 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.ImportJobError;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ImportJobErrorRepository extends JpaRepository<ImportJobError, Long> {
+
+    List<ImportJobError> findByJobIdOrderByRowNumber(UUID jobId, Pageable pageable);
+}
@@ -0,0 +1,25 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.ImportJob;
+import com.sonnguyen.laptopshop.model.ImportJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, UUID> {
+
+    List<ImportJob> findByStatusInOrderByCreatedAt(Collection<ImportJobStatus> statuses);
+
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.importedRows = j.importedRows + :imported, j.failedRows = j.failedRows + :failed, " +
+            "j.lastCommittedRow = :lastRow, j.updatedAt = CURRENT_TIMESTAMP WHERE j.id = :id")
+    int recordChunk(@Param("id") UUID id, @Param("lastRow") int lastRow,
+                    @Param("imported") long imported, @Param("failed") long failed);
+}
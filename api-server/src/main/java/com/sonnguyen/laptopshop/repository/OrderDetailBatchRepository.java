@@ -0,0 +1,11 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.OrderDetail;
+
+import java.util.List;
+
+// Checkout writes all lines of an order in one JDBC batch. OrderDetail ids are IDENTITY, which
+// keeps Hibernate from batching the inserts itself.
+public interface OrderDetailBatchRepository {
+    void insertAll(List<OrderDetail> details);
+}
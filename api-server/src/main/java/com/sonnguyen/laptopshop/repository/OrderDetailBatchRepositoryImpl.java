@@ -0,0 +1,71 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.OrderDetail;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+public class OrderDetailBatchRepositoryImpl implements OrderDetailBatchRepository {
+
+    private static final String INSERT = "INSERT INTO order_details (order_id, product_id, quantity, price, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderDetailBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Runs on the connection of the surrounding JPA transaction; the order must already be inserted
+    @Override
+    public void insertAll(List<OrderDetail> details) {
+        if (details.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        // Instants are stored as UTC, the same way Hibernate writes them
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Timestamp timestamp = Timestamp.from(now);
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        OrderDetail detail = details.get(i);
+                        statement.setLong(1, detail.getOrder().getId());
+                        statement.setLong(2, detail.getProduct().getId());
+                        statement.setLong(3, detail.getQuantity());
+                        statement.setDouble(4, detail.getPrice());
+                        statement.setTimestamp(5, timestamp, utc);
+                        statement.setTimestamp(6, timestamp, utc);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return details.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < details.size(); i++) {
+            OrderDetail detail = details.get(i);
+            detail.setCreatedAt(now);
+            detail.setUpdatedAt(now);
+            if (i < generated.size()) {
+                Object id = generated.get(i).values().iterator().next();
+                detail.setId(((Number) id).longValue());
+            }
+        }
+    }
+}
@@ -2,12 +2,49 @@ package com.sonnguyen.laptopshop.repository;
 
 import com.sonnguyen.laptopshop.model.Order;
 import com.sonnguyen.laptopshop.model.OrderDetail;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long> {
+public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>, OrderDetailBatchRepository {
     List<OrderDetail> findByOrder(Order order);
+
+    // lines of several orders with their products and categories, in one query
+    @EntityGraph(attributePaths = {"product", "product.category"})
+    List<OrderDetail> findByOrderIdIn(Collection<Long> orderIds);
+
+    @Modifying
+    @Query("DELETE FROM OrderDetail d WHERE d.product.id IN :productIds")
+    int deleteByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Modifying
+    @Query("DELETE FROM OrderDetail d WHERE d.order.id IN :orderIds")
+    int deleteByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    // rows of (product id, line created at, units), one per line of the orders
+    @Query("SELECT d.product.id, d.createdAt, d.quantity FROM OrderDetail d WHERE d.order.id IN :orderIds " +
+            "AND d.product IS NOT NULL")
+    List<Object[]> findSoldLinesForOrders(@Param("orderIds") Collection<Long> orderIds);
+
+    // rows of (product_id, day, units sold); cancelled orders gave their units back
+    @Query(value = "SELECT d.product_id, DATE(d.created_at), SUM(d.quantity) FROM order_details d " +
+            "JOIN orders o ON o.id = d.order_id " +
+            "WHERE d.created_at >= :since AND d.product_id IS NOT NULL AND o.status <> 'CANCELLED' " +
+            "GROUP BY d.product_id, DATE(d.created_at)", nativeQuery = true)
+    List<Object[]> sumQuantityByProductAndDay(@Param("since") Instant since);
+
+    @Query(value = "SELECT d.product.id FROM OrderDetail d WHERE d.createdAt >= :since " +
+            "GROUP BY d.product.id ORDER BY SUM(d.quantity) DESC, d.product.id",
+            countQuery = "SELECT COUNT(DISTINCT d.product.id) FROM OrderDetail d WHERE d.createdAt >= :since")
+    Page<Long> findTopSellingProductIdsSince(@Param("since") Instant since, Pageable pageable);
 }
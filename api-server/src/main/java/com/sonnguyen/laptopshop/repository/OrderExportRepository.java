@@ -0,0 +1,12 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+
+import java.util.function.Consumer;
+
+// Full order exports read one forward-only result set and hand over one order at a time, so memory
+// does not grow with the number of orders
+public interface OrderExportRepository {
+    // Orders in id order with their lines, product names and customer; status may be null
+    void forEachOrder(String status, Consumer<OrderResponse> action);
+}
@@ -0,0 +1,144 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.payload.response.OrderDetailResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import com.sonnguyen.laptopshop.payload.response.UserResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+public class OrderExportRepositoryImpl implements OrderExportRepository {
+
+    private static final String SELECT = "SELECT o.id, o.total_price, o.coupon_code, o.discount_amount, o.receiver_name, o.receiver_address, o.receiver_phone, " +
+            "o.status, o.order_date, o.created_at, o.updated_at, u.username, u.email, u.full_name, " +
+            "d.id AS detail_id, d.quantity, d.price, d.created_at AS detail_created_at, d.updated_at AS detail_updated_at, " +
+            "p.id AS product_id, p.name AS product_name, c.id AS category_id, c.name AS category_name " +
+            "FROM orders o " +
+            "LEFT JOIN users u ON u.id = o.user_id " +
+            "LEFT JOIN order_details d ON d.order_id = o.id " +
+            "LEFT JOIN products p ON p.id = d.product_id " +
+            "LEFT JOIN categories c ON c.id = p.category_id ";
+    // rows of one order arrive together, walking the primary key and the order_details foreign key index
+    private static final String ORDER_BY = "ORDER BY o.id, d.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderExportRepositoryImpl(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Connector/J streams the result set row by row instead of buffering it all client-side
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    // Holds a pooled connection until the last row is read, so a slow client keeps it busy for the
+    // whole download. Must not run inside a transaction that uses the same connection for other
+    // statements: a streaming result set blocks the connection until it is closed.
+    @Override
+    public void forEachOrder(String status, Consumer<OrderResponse> action) {
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        OrderAssembler assembler = new OrderAssembler(action, utc);
+        if (status != null && !status.isEmpty()) {
+            jdbcTemplate.query(SELECT + "WHERE o.status = ? " + ORDER_BY, assembler, status);
+        } else {
+            jdbcTemplate.query(SELECT + ORDER_BY, assembler);
+        }
+        assembler.finish();
+    }
+
+    // Folds consecutive rows of the same order into one OrderResponse
+    private static final class OrderAssembler implements RowCallbackHandler {
+
+        private final Consumer<OrderResponse> action;
+        private final Calendar utc;
+        private OrderResponse current;
+
+        private OrderAssembler(Consumer<OrderResponse> action, Calendar utc) {
+            this.action = action;
+            this.utc = utc;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long orderId = rs.getLong("id");
+            if (current == null || current.getId() != orderId) {
+                finish();
+                current = order(rs, orderId);
+            }
+            long detailId = rs.getLong("detail_id");
+            if (!rs.wasNull()) {
+                current.getOrderDetails().add(detail(rs, detailId));
+            }
+        }
+
+        private void finish() {
+            if (current != null) {
+                action.accept(current);
+                current = null;
+            }
+        }
+
+        private OrderResponse order(ResultSet rs, long orderId) throws SQLException {
+            OrderResponse order = new OrderResponse();
+            order.setId(orderId);
+            order.setTotalPrice(rs.getObject("total_price", Double.class));
+            order.setCouponCode(rs.getString("coupon_code"));
+            order.setDiscountAmount(rs.getObject("discount_amount", Double.class));
+            order.setReceiverName(rs.getString("receiver_name"));
+            order.setReceiverAddress(rs.getString("receiver_address"));
+            order.setReceiverPhone(rs.getString("receiver_phone"));
+            order.setStatus(rs.getString("status"));
+            order.setOrderDate(instant(rs, "order_date"));
+            order.setCreatedAt(instant(rs, "created_at"));
+            order.setUpdatedAt(instant(rs, "updated_at"));
+            order.setOrderDetails(new ArrayList<>());
+
+            String username = rs.getString("username");
+            if (username != null) {
+                UserResponse user = new UserResponse();
+                user.setUsername(username);
+                user.setEmail(rs.getString("email"));
+                user.setFullName(rs.getString("full_name"));
+                order.setUser(user);
+            }
+            return order;
+        }
+
+        private OrderDetailResponse detail(ResultSet rs, long detailId) throws SQLException {
+            OrderDetailResponse detail = new OrderDetailResponse();
+            detail.setId(detailId);
+            detail.setQuantity(rs.getObject("quantity", Long.class));
+            detail.setPrice(rs.getObject("price", Double.class));
+            detail.setCreatedAt(instant(rs, "detail_created_at"));
+            detail.setUpdatedAt(instant(rs, "detail_updated_at"));
+
+            long productId = rs.getLong("product_id");
+            if (!rs.wasNull()) {
+                ProductResponse product = new ProductResponse();
+                product.setId(productId);
+                product.setName(rs.getString("product_name"));
+                long categoryId = rs.getLong("category_id");
+                if (!rs.wasNull()) {
+                    product.setCategoryId(categoryId);
+                    product.setCategoryName(rs.getString("category_name"));
+                }
+                detail.setProduct(product);
+            }
+            return detail;
+        }
+
+        // stored as UTC, the same way Hibernate writes Instants
+        private Instant instant(ResultSet rs, String column) throws SQLException {
+            Timestamp timestamp = rs.getTimestamp(column, utc);
+            return timestamp != null ? timestamp.toInstant() : null;
+        }
+    }
+}
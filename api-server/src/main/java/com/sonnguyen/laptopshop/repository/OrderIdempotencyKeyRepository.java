@@ -0,0 +1,24 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.OrderIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface OrderIdempotencyKeyRepository extends JpaRepository<OrderIdempotencyKey, Long> {
+    Optional<OrderIdempotencyKey> findByUsernameAndIdempotencyKey(String username, String idempotencyKey);
+
+    @Modifying
+    @Query("DELETE FROM OrderIdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+
+    @Modifying
+    @Query("DELETE FROM OrderIdempotencyKey k WHERE k.username = :username AND k.idempotencyKey = :key AND k.createdAt < :before")
+    int deleteKeyCreatedBefore(@Param("username") String username, @Param("key") String key, @Param("before") Instant before);
+}
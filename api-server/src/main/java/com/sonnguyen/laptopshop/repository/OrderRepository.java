@@ -5,15 +5,19 @@ import com.sonnguyen.laptopshop.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order>, OrderExportRepository {
     List<Order> findByUser(User user);
     List<Order> findByUserId(UUID userId);
     
@@ -24,4 +28,45 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserAndStatus(@Param("user") User user, @Param("status") String status);
     @Query("SELECT SUM(o.totalPrice) FROM Order o WHERE o.status = 'COMPLETED'")
     Double sumRevenue();
+
+    // rows of (status, orders, sum of total price)
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.totalPrice), 0) FROM Order o GROUP BY o.status")
+    List<Object[]> countAndSumByStatus();
+
+    // rows of (id, status, total price) for the listed orders still in one of the statuses, locked until commit
+    @Query(value = "SELECT o.id, o.status, COALESCE(o.total_price, 0) FROM orders o WHERE o.id IN (:ids) AND o.status IN (:statuses) FOR UPDATE",
+            nativeQuery = true)
+    List<Object[]> lockStatuses(@Param("ids") Collection<Long> ids, @Param("statuses") Collection<String> statuses);
+
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status AND o.id > :afterId " +
+            "AND (:orderedBefore IS NULL OR o.orderDate < :orderedBefore) ORDER BY o.id")
+    List<Long> findIdsByStatusAfter(@Param("status") String status, @Param("afterId") Long afterId,
+                                    @Param("orderedBefore") Instant orderedBefore, Pageable pageable);
+
+    @Query("SELECT o.id FROM Order o WHERE o.status = :status AND o.updatedAt >= :since AND o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsByStatusUpdatedSince(@Param("status") String status, @Param("since") Instant since,
+                                           @Param("afterId") Long afterId, Pageable pageable);
+
+    // rows of (order id, order date, total price, product id, product name, factory, category id,
+    // category name, quantity, price, target), one per line, lines of an order together
+    @Query("SELECT o.id, o.orderDate, o.totalPrice, p.id, p.name, p.factory, c.id, c.name, d.quantity, d.price, p.target " +
+            "FROM Order o LEFT JOIN o.orderDetails d LEFT JOIN d.product p LEFT JOIN p.category c " +
+            "WHERE o.id IN :ids ORDER BY o.id")
+    List<Object[]> findSaleLines(@Param("ids") Collection<Long> ids);
+
+    // orders in one of the statuses whose last change is older than the cutoff, by id
+    @Query("SELECT o.id FROM Order o WHERE o.status IN :statuses AND o.updatedAt < :cutoff AND o.id > :afterId ORDER BY o.id")
+    List<Long> findIdsToArchive(@Param("statuses") Collection<String> statuses, @Param("cutoff") Instant cutoff,
+                                @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT o.id, o.status FROM Order o WHERE o.id IN :ids")
+    List<Object[]> findStatuses(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Order o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :status, o.updatedAt = :updatedAt WHERE o.id IN :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") String status, @Param("updatedAt") Instant updatedAt);
 }
@@ -0,0 +1,24 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+// Lightweight catalog listing: one SELECT of the listing columns plus the category name,
+// without the MEDIUMTEXT description and without lazy-loading the category per row.
+public interface ProductListingRepository {
+    Page<ProductResponse> findListing(Specification<Product> spec, Pageable pageable);
+
+    // The first limit rows in sort order, without a count
+    List<ProductResponse> findListing(Specification<Product> spec, Sort sort, int limit);
+
+    List<ProductResponse> findListingByIds(Collection<Long> ids);
+
+    List<Long> findIds(Specification<Product> spec);
+}
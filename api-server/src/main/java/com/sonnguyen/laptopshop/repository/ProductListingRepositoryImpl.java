@@ -0,0 +1,149 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.Category;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public class ProductListingRepositoryImpl implements ProductListingRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ProductResponse> findListing(Specification<Product> spec, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        selectListingColumns(query, root);
+
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, criteriaBuilder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<ProductResponse> content = typedQuery.getResultList().stream()
+                .map(ProductListingRepositoryImpl::toResponse)
+                .toList();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<ProductResponse> findListing(Specification<Product> spec, Sort sort, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        selectListingColumns(query, root);
+
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, criteriaBuilder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        }
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+                .map(ProductListingRepositoryImpl::toResponse)
+                .toList();
+    }
+
+    @Override
+    public List<ProductResponse> findListingByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        selectListingColumns(query, root);
+        query.where(root.get("id").in(ids));
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(ProductListingRepositoryImpl::toResponse)
+                .toList();
+    }
+
+    @Override
+    public List<Long> findIds(Specification<Product> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(root.get("id"));
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, criteriaBuilder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(criteriaBuilder.asc(root.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        query.select(criteriaBuilder.count(root));
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, criteriaBuilder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static void selectListingColumns(CriteriaQuery<Tuple> query, Root<Product> root) {
+        Join<Product, Category> category = root.join("category", JoinType.LEFT);
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("name").alias("name"),
+                root.get("price").alias("price"),
+                root.get("image").alias("image"),
+                root.get("quantity").alias("quantity"),
+                root.get("sold").alias("sold"),
+                root.get("factory").alias("factory"),
+                root.get("target").alias("target"),
+                category.get("id").alias("categoryId"),
+                category.get("name").alias("categoryName"),
+                root.get("createdAt").alias("createdAt"),
+                root.get("updatedAt").alias("updatedAt"));
+    }
+
+    private static ProductResponse toResponse(Tuple tuple) {
+        ProductResponse response = new ProductResponse();
+        response.setId(tuple.get("id", Long.class));
+        response.setName(tuple.get("name", String.class));
+        response.setPrice(tuple.get("price", Double.class));
+        response.setImage(tuple.get("image", String.class));
+        response.setQuantity(tuple.get("quantity", Long.class));
+        response.setSold(tuple.get("sold", Long.class));
+        response.setFactory(tuple.get("factory", String.class));
+        response.setTarget(tuple.get("target", String.class));
+        response.setCategoryId(tuple.get("categoryId", Long.class));
+        response.setCategoryName(tuple.get("categoryName", String.class));
+        response.setCreatedAt(tuple.get("createdAt", Instant.class));
+        response.setUpdatedAt(tuple.get("updatedAt", Instant.class));
+        return response;
+    }
+}
@@ -5,30 +5,73 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductListingRepository {
     
     @Query("SELECT p FROM Product p WHERE p.name LIKE %:keyword% OR p.description LIKE %:keyword%")
     Page<Product> findByKeyword(@Param("keyword") String keyword, Pageable pageable);
     
-    @Query("SELECT p FROM Product p WHERE p.factory = :factory")
-    Page<Product> findByFactory(@Param("factory") String factory, Pageable pageable);
-    
-    @Query("SELECT p FROM Product p WHERE p.price BETWEEN :minPrice AND :maxPrice")
-    Page<Product> findByPriceRange(@Param("minPrice") Double minPrice, @Param("maxPrice") Double maxPrice, Pageable pageable);
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id = :id")
+    Optional<Product> findWithCategoryById(@Param("id") Long id);
     
     @Query("SELECT DISTINCT p.factory FROM Product p")
     List<String> findAllFactories();
-    
-    @Query("SELECT p FROM Product p WHERE p.quantity > 0")
-    Page<Product> findAvailableProducts(Pageable pageable);
-    
-    @Query("SELECT p FROM Product p ORDER BY p.sold DESC")
-    Page<Product> findTopSellingProducts(Pageable pageable);
+
+    @Query("SELECT p.id, p.sold FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<Object[]> findSoldCountsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT p.id, p.category.id FROM Product p WHERE p.id > :afterId AND p.category IS NOT NULL ORDER BY p.id")
+    List<Object[]> findCategoryIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    @Query("SELECT p.id, p.quantity, p.sold FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockByIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Product p WHERE p.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // prices are whole VND amounts
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.price = ROUND(p.price * :factor, 0), p.updatedAt = CURRENT_TIMESTAMP, " +
+            "p.version = p.version + 1 " +
+            "WHERE p.id IN :ids AND ROUND(p.price * :factor, 0) > 0")
+    int scalePrices(@Param("ids") Collection<Long> ids, @Param("factor") double factor);
+
+    // rows that would go below zero are left unchanged
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity + :delta, p.updatedAt = CURRENT_TIMESTAMP, " +
+            "p.version = p.version + 1 " +
+            "WHERE p.id IN :ids AND p.quantity + :delta >= 0")
+    int adjustQuantities(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    // single-row conditional decrement: it matches nothing when stock is short, so concurrent
+    // checkouts can never take the quantity below zero
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity - :amount, p.sold = COALESCE(p.sold, 0) + :amount, " +
+            "p.version = p.version + 1 WHERE p.id = :id AND p.quantity >= :amount")
+    int reserveStock(@Param("id") Long id, @Param("amount") long amount);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity + :amount, " +
+            "p.sold = CASE WHEN COALESCE(p.sold, 0) >= :amount THEN p.sold - :amount ELSE 0 END, " +
+            "p.version = p.version + 1 WHERE p.id = :id")
+    int releaseStock(@Param("id") Long id, @Param("amount") long amount);
+
+    // applies stock already reserved elsewhere (in-memory hot stock); negative amounts put it back
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.quantity = p.quantity - :amount, p.sold = COALESCE(p.sold, 0) + :amount, " +
+            "p.version = p.version + 1 WHERE p.id = :id")
+    int applyStockDelta(@Param("id") Long id, @Param("amount") long amount);
 }
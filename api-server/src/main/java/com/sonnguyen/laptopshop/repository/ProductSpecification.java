@@ -1,12 +1,21 @@
 package com.sonnguyen.laptopshop.repository;
 
 import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.request.ProductFilterRequest;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
 
 public class ProductSpecification {
 
+    public static Specification<Product> matching(ProductFilterRequest filter) {
+        return Specification.where(hasFactoryIn(filter.getFactories()))
+                .and(hasTargetIn(filter.getTargets()))
+                .and(hasCategoryIn(filter.getCategoryIds()))
+                .and(hasPriceBetween(filter.getMinPrice(), filter.getMaxPrice()))
+                .and(nameContains(filter.getKeyword()));
+    }
+
     public static Specification<Product> hasFactoryIn(List<String> factories) {
         return (root, query, criteriaBuilder) -> {
             if (factories == null || factories.isEmpty()) {
@@ -25,6 +34,19 @@ public class ProductSpecification {
         };
     }
 
+    public static Specification<Product> hasCategoryIn(List<Long> categoryIds) {
+        return (root, query, criteriaBuilder) -> {
+            if (categoryIds == null || categoryIds.isEmpty()) {
+                return criteriaBuilder.conjunction();
+            }
+            return root.get("category").get("id").in(categoryIds);
+        };
+    }
+
+    public static Specification<Product> isAvailable() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.greaterThan(root.get("quantity"), 0L);
+    }
+
     public static Specification<Product> hasPriceBetween(Double min, Double max) {
         return (root, query, criteriaBuilder) -> {
             if (min == null && max == null) {
@@ -3,11 +3,19 @@ package com.sonnguyen.laptopshop.repository;
 import com.sonnguyen.laptopshop.model.Product;
 import com.sonnguyen.laptopshop.model.Review;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     List<Review> findByProductOrderByCreatedAtDesc(Product product);
+
+    @Modifying
+    @Query("DELETE FROM Review r WHERE r.product.id IN :productIds")
+    int deleteByProductIdIn(@Param("productIds") Collection<Long> productIds);
 }
@@ -0,0 +1,13 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.SalesRollup;
+
+import java.util.List;
+
+// Rollup rows are updated by many order completions at once, so they are upserted with
+// INSERT ... ON DUPLICATE KEY UPDATE instead of being read and saved through JPA.
+public interface SalesRollupBatchRepository {
+    // Adds revenue, orders and units of each delta to its bucket row, creating it when missing.
+    // Callers pass the deltas sorted by bucket key, so concurrent batches lock rows in one order.
+    void addAll(List<SalesRollup> deltas);
+}
@@ -0,0 +1,56 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.SalesRollup;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+public class SalesRollupBatchRepositoryImpl implements SalesRollupBatchRepository {
+
+    private static final String UPSERT = "INSERT INTO sales_rollups " +
+            "(granularity, dimension, dimension_key, label, bucket_start, revenue, orders, units) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE label = COALESCE(VALUES(label), label), revenue = revenue + VALUES(revenue), " +
+            "orders = orders + VALUES(orders), units = units + VALUES(units)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SalesRollupBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Runs on the connection of the surrounding JPA transaction
+    @Override
+    public void addAll(List<SalesRollup> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // Instants are stored as UTC, the same way Hibernate writes them
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        jdbcTemplate.batchUpdate(UPSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                SalesRollup delta = deltas.get(i);
+                statement.setString(1, delta.getGranularity().name());
+                statement.setString(2, delta.getDimension().name());
+                statement.setString(3, delta.getDimensionKey());
+                statement.setString(4, delta.getLabel());
+                statement.setTimestamp(5, Timestamp.from(delta.getBucketStart()), utc);
+                statement.setDouble(6, delta.getRevenue());
+                statement.setLong(7, delta.getOrders());
+                statement.setLong(8, delta.getUnits());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.SalesRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long>, SalesRollupBatchRepository {
+
+    @Query("SELECT r FROM SalesRollup r WHERE r.granularity = :granularity AND r.dimension = :dimension " +
+            "AND r.dimensionKey = :dimensionKey AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<SalesRollup> findSeries(@Param("granularity") SalesRollup.Granularity granularity,
+                                 @Param("dimension") SalesRollup.Dimension dimension,
+                                 @Param("dimensionKey") String dimensionKey,
+                                 @Param("from") Instant from, @Param("to") Instant to);
+
+    // rows of (key, label, revenue, orders, units) over the range, highest revenue first
+    @Query("SELECT r.dimensionKey, MAX(r.label), SUM(r.revenue), SUM(r.orders), SUM(r.units) FROM SalesRollup r " +
+            "WHERE r.granularity = :granularity AND r.dimension = :dimension " +
+            "AND r.bucketStart >= :from AND r.bucketStart < :to " +
+            "GROUP BY r.dimensionKey ORDER BY SUM(r.revenue) DESC, r.dimensionKey")
+    List<Object[]> sumByKey(@Param("granularity") SalesRollup.Granularity granularity,
+                            @Param("dimension") SalesRollup.Dimension dimension,
+                            @Param("from") Instant from, @Param("to") Instant to, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM SalesRollup r")
+    int deleteAllRows();
+}
@@ -0,0 +1,25 @@
+package com.sonnguyen.laptopshop.repository;
+
+import com.sonnguyen.laptopshop.model.SalesRollupState;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SalesRollupStateRepository extends JpaRepository<SalesRollupState, Long> {
+
+    // taken by order completions; waits for a backfill chunk in progress
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT s FROM SalesRollupState s WHERE s.id = :id")
+    Optional<SalesRollupState> findForShare(@Param("id") Long id);
+
+    // taken by each backfill chunk
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SalesRollupState s WHERE s.id = :id")
+    Optional<SalesRollupState> findForUpdate(@Param("id") Long id);
+}
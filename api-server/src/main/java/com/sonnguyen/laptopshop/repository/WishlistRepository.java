@@ -4,10 +4,12 @@ import com.sonnguyen.laptopshop.model.Product;
 import com.sonnguyen.laptopshop.model.User;
 import com.sonnguyen.laptopshop.model.Wishlist;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,4 +21,8 @@ public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
     Optional<Wishlist> findByUserIdAndProductId(UUID userId, Long productId);
     boolean existsByUserIdAndProductId(UUID userId, Long productId);
     void deleteByUserIdAndProductId(UUID userId, Long productId);
+
+    @Modifying
+    @Query("DELETE FROM Wishlist w WHERE w.product.id IN :productIds")
+    int deleteByProductIdIn(@Param("productIds") Collection<Long> productIds);
 }
@@ -0,0 +1,313 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.request.ProductFilterRequest;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Column-oriented copy of the catalog for filter listings: one primitive array per sortable field and
+// dictionary codes for factory/target/category. Filters are scans into a BitSet of row ordinals and
+// sorts compare array slots, so only the requested page of ids goes back to the database.
+// Matches ProductSpecification.matching(filter) row for row. Enabled with laptopshop.catalog-snapshot.enabled.
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "laptopshop.catalog-snapshot", name = "enabled", havingValue = "true")
+public class CatalogSnapshot {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_CODE = -1;
+
+    private final ProductRepository productRepository;
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private int size;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private long[] sold = new long[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    // lower-cased, for the keyword filter and name sort
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] factoryCodes = new int[INITIAL_CAPACITY];
+    private int[] targetCodes = new int[INITIAL_CAPACITY];
+    private int[] categoryCodes = new int[INITIAL_CAPACITY];
+
+    private final Dictionary<String> factories = new Dictionary<>();
+    private final Dictionary<String> targets = new Dictionary<>();
+    private final Dictionary<Long> categories = new Dictionary<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public CatalogSnapshot(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        Pageable pageable = PageRequest.of(0, BUILD_BATCH_SIZE, Sort.by("id"));
+        Page<Product> batch;
+        do {
+            batch = productRepository.findAll(pageable);
+            lock.writeLock().lock();
+            try {
+                batch.forEach(this::putLocked);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            pageable = batch.nextPageable();
+        } while (batch.hasNext());
+        ready = true;
+        log.info("Catalog snapshot built: {} products in {} ms", ordinals.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.STOCK_CHANGED) {
+            // checkout only moves quantity/sold, so reload just those two columns
+            List<Object[]> rows = productRepository.findStockByIds(event.getProductIds());
+            lock.writeLock().lock();
+            try {
+                for (Object[] row : rows) {
+                    Integer ordinal = ordinals.get((Long) row[0]);
+                    if (ordinal != null) {
+                        quantities[ordinal] = row[1] != null ? (Long) row[1] : 0L;
+                        sold[ordinal] = row[2] != null ? (Long) row[2] : 0L;
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(this::removeLocked);
+            } else if (event.getType() == ProductChangedEvent.Type.SAVED) {
+                event.getProducts().forEach(this::putLocked);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns the ids of one page of matching products, in the pageable's sort order (id when unsorted)
+    public Page<Long> filter(ProductFilterRequest filter, Pageable pageable) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(filter);
+            int[] rows = matches.stream().toArray();
+            int total = rows.length;
+            long offset = pageable.getOffset();
+            if (offset >= total) {
+                return new PageImpl<>(List.of(), pageable, total);
+            }
+
+            sort(rows, comparator(pageable.getSort()));
+            int end = (int) Math.min(total, offset + pageable.getPageSize());
+            List<Long> page = new ArrayList<>(end - (int) offset);
+            for (int i = (int) offset; i < end; i++) {
+                page.add(ids[rows[i]]);
+            }
+            return new PageImpl<>(page, pageable, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet match(ProductFilterRequest filter) {
+        boolean[] factoryAllowed = factories.lookup(filter.getFactories());
+        boolean[] targetAllowed = targets.lookup(filter.getTargets());
+        boolean[] categoryAllowed = categories.lookup(filter.getCategoryIds());
+        Double min = filter.getMinPrice();
+        Double max = filter.getMaxPrice();
+        String keyword = filter.getKeyword() != null && !filter.getKeyword().isEmpty()
+                ? filter.getKeyword().toLowerCase() : null;
+
+        BitSet result = new BitSet(size);
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (allowed(factoryAllowed, factoryCodes[row])
+                    && allowed(targetAllowed, targetCodes[row])
+                    && allowed(categoryAllowed, categoryCodes[row])
+                    && (min == null || prices[row] >= min)
+                    && (max == null || prices[row] <= max)
+                    && (keyword == null || (names[row] != null && names[row].contains(keyword)))) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    // a null lookup means the dimension is not filtered; null values never match a filtered dimension
+    private static boolean allowed(boolean[] lookup, int code) {
+        return lookup == null || (code != NO_CODE && code < lookup.length && lookup[code]);
+    }
+
+    private RowComparator comparator(Sort sort) {
+        RowComparator result = null;
+        for (Sort.Order order : sort) {
+            RowComparator next = column(order.getProperty());
+            if (order.isDescending()) {
+                RowComparator ascending = next;
+                next = (a, b) -> ascending.compare(b, a);
+            }
+            result = result == null ? next : result.then(next);
+        }
+        RowComparator byId = column("id");
+        return result == null ? byId : result.then(byId);
+    }
+
+    private RowComparator column(String property) {
+        return switch (property) {
+            case "id" -> (a, b) -> Long.compare(ids[a], ids[b]);
+            case "price" -> (a, b) -> Double.compare(prices[a], prices[b]);
+            case "quantity" -> (a, b) -> Long.compare(quantities[a], quantities[b]);
+            case "sold" -> (a, b) -> Long.compare(sold[a], sold[b]);
+            case "createdAt" -> (a, b) -> Long.compare(createdAt[a], createdAt[b]);
+            case "name" -> (a, b) -> Objects.compare(names[a], names[b], Comparator.nullsFirst(Comparator.naturalOrder()));
+            default -> throw new CommonException("Unsupported sortBy: " + property, HttpStatus.BAD_REQUEST);
+        };
+    }
+
+    // Merge sort over row ordinals so sorting never boxes
+    private static void sort(int[] rows, RowComparator comparator) {
+        if (rows.length < 2) {
+            return;
+        }
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int low = 0; low < rows.length - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, rows.length);
+                int i = low, j = mid, k = low;
+                while (i < mid && j < high) {
+                    buffer[k++] = comparator.compare(rows[j], rows[i]) < 0 ? rows[j++] : rows[i++];
+                }
+                while (i < mid) {
+                    buffer[k++] = rows[i++];
+                }
+                while (j < high) {
+                    buffer[k++] = rows[j++];
+                }
+                System.arraycopy(buffer, low, rows, low, high - low);
+            }
+        }
+    }
+
+    private void putLocked(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        Integer existing = ordinals.get(product.getId());
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+        } else {
+            ordinal = freeOrdinals.isEmpty() ? size++ : freeOrdinals.pop();
+            ensureCapacity(ordinal + 1);
+            ordinals.put(product.getId(), ordinal);
+        }
+
+        ids[ordinal] = product.getId();
+        prices[ordinal] = product.getPrice() != null ? product.getPrice() : 0;
+        quantities[ordinal] = product.getQuantity() != null ? product.getQuantity() : 0;
+        sold[ordinal] = product.getSold() != null ? product.getSold() : 0;
+        createdAt[ordinal] = product.getCreatedAt() != null ? product.getCreatedAt().toEpochMilli() : 0;
+        names[ordinal] = product.getName() != null ? product.getName().toLowerCase() : null;
+        factoryCodes[ordinal] = factories.encode(product.getFactory());
+        targetCodes[ordinal] = targets.encode(product.getTarget());
+        categoryCodes[ordinal] = categories.encode(product.getCategory() != null ? product.getCategory().getId() : null);
+        live.set(ordinal);
+    }
+
+    private void removeLocked(Long productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        live.clear(ordinal);
+        names[ordinal] = null;
+        freeOrdinals.push(ordinal);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        sold = Arrays.copyOf(sold, newCapacity);
+        createdAt = Arrays.copyOf(createdAt, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        factoryCodes = Arrays.copyOf(factoryCodes, newCapacity);
+        targetCodes = Arrays.copyOf(targetCodes, newCapacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, newCapacity);
+    }
+
+    @FunctionalInterface
+    private interface RowComparator {
+        int compare(int a, int b);
+
+        default RowComparator then(RowComparator next) {
+            return (a, b) -> {
+                int result = compare(a, b);
+                return result != 0 ? result : next.compare(a, b);
+            };
+        }
+    }
+
+    // Append-only value -> code mapping; codes of values no longer in use are simply never matched
+    private static final class Dictionary<V> {
+        private final Map<V, Integer> codes = new HashMap<>();
+
+        int encode(V value) {
+            if (value == null) {
+                return NO_CODE;
+            }
+            return codes.computeIfAbsent(value, key -> codes.size());
+        }
+
+        boolean[] lookup(Collection<V> values) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            boolean[] allowed = new boolean[codes.size()];
+            for (V value : values) {
+                Integer code = codes.get(value);
+                if (code != null) {
+                    allowed[code] = true;
+                }
+            }
+            return allowed;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.CategoryChangedEvent;
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.model.Category;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.CategoryResponse;
+import com.sonnguyen.laptopshop.repository.CategoryRepository;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// In-memory index of categories by id, name and slug with live product counts. Serves the public
+// category listing and lookups, and lets imports resolve categories without a query per row.
+// Category writes arrive as CategoryChangedEvent and product writes as ProductChangedEvent, after commit.
+@Slf4j
+@Component
+public class CategoryRegistry {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate newTransaction;
+
+    // replaced as a whole (copy on write) so readers never see a half-applied refresh
+    private volatile Index index = new Index();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // productId -> categoryId, so a delete (which only carries ids) or a move can adjust the counts
+    private final Map<Long, Long> productCategories = new HashMap<>();
+    private final Map<Long, Long> productCounts = new ConcurrentHashMap<>();
+    private final Object countsLock = new Object();
+    private volatile boolean ready;
+
+    public CategoryRegistry(CategoryRepository categoryRepository, ProductRepository productRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        refresh();
+        long afterId = 0;
+        List<Object[]> batch;
+        do {
+            batch = productRepository.findCategoryIdsAfter(afterId, PageRequest.ofSize(BUILD_BATCH_SIZE));
+            synchronized (countsLock) {
+                for (Object[] row : batch) {
+                    afterId = (Long) row[0];
+                    assignLocked(afterId, (Long) row[1]);
+                }
+            }
+        } while (batch.size() == BUILD_BATCH_SIZE);
+        ready = true;
+        log.info("Category registry built: {} categories, {} products in {} ms",
+                index.byId.size(), productCategories.size(), System.currentTimeMillis() - start);
+    }
+
+    // Reloads every category in one query; product counts are kept
+    public void refresh() {
+        List<Category> categories = categoryRepository.findAll();
+        writeLock.lock();
+        try {
+            Index refreshed = new Index();
+            categories.forEach(category -> refreshed.put(Entry.of(category)));
+            index = refreshed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public List<CategoryResponse> findAll() {
+        return index.byId.values().stream()
+                .sorted(Comparator.comparing(Entry::id))
+                .map(this::toResponse)
+                .toList();
+    }
+
+    public Optional<CategoryResponse> findById(Long id) {
+        return Optional.ofNullable(id != null ? index.byId.get(id) : null).map(this::toResponse);
+    }
+
+    public Optional<CategoryResponse> findBySlug(String slug) {
+        return Optional.ofNullable(slug != null ? index.bySlug.get(slug) : null).map(this::toResponse);
+    }
+
+    public boolean exists(Long id) {
+        return id != null && index.byId.containsKey(id);
+    }
+
+    public Optional<Long> findIdByName(String name) {
+        Entry entry = name != null ? index.byName.get(key(name)) : null;
+        return entry != null ? Optional.of(entry.id()) : Optional.empty();
+    }
+
+    // Returns name -> id for every given name, creating the missing categories together in their own
+    // transaction so they stay usable even if the caller's transaction rolls back
+    public Map<String, Long> resolveOrCreate(Collection<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            Optional<Long> id = findIdByName(name);
+            if (id.isPresent()) {
+                ids.put(name, id.get());
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ids;
+        }
+
+        writeLock.lock();
+        try {
+            Index updated = index.copy();
+            List<Category> created = newTransaction.execute(status -> {
+                List<Category> categories = new ArrayList<>();
+                for (String name : missing) {
+                    // another import may have created it while this one waited for the lock
+                    if (updated.byName.containsKey(key(name))) {
+                        continue;
+                    }
+                    Category category = new Category();
+                    category.setName(name);
+                    category.setDescription("Created via Excel Import"); // Default description
+                    category.setSlug(updated.uniqueSlug(name));
+                    updated.put(Entry.pending(name, category.getSlug()));
+                    categories.add(category);
+                }
+                return categoryRepository.saveAll(categories);
+            });
+            created.forEach(category -> updated.put(Entry.of(category)));
+            index = updated;
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (String name : missing) {
+            ids.put(name, index.byName.get(key(name)).id());
+        }
+        return ids;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        writeLock.lock();
+        try {
+            Index updated = index.copy();
+            updated.remove(event.isDeleted() ? event.getDeletedId() : event.getCategory().getId());
+            if (!event.isDeleted()) {
+                updated.put(Entry.of(event.getCategory()));
+            }
+            index = updated;
+        } finally {
+            writeLock.unlock();
+        }
+        if (event.isDeleted()) {
+            // its products were deleted with it and arrive as a DELETED product event
+            productCounts.remove(event.getDeletedId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (countsLock) {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(productId -> assignLocked(productId, null));
+            } else if (event.getType() == ProductChangedEvent.Type.SAVED) {
+                for (Product product : event.getProducts()) {
+                    if (product.getId() != null) {
+                        assignLocked(product.getId(), product.getCategory() != null ? product.getCategory().getId() : null);
+                    }
+                }
+            }
+        }
+    }
+
+    // Moves a product to categoryId (null removes it) and adjusts both counts
+    private void assignLocked(Long productId, Long categoryId) {
+        Long previous = categoryId != null ? productCategories.put(productId, categoryId) : productCategories.remove(productId);
+        if (Objects.equals(previous, categoryId)) {
+            return;
+        }
+        if (previous != null) {
+            productCounts.computeIfPresent(previous, (id, count) -> count > 1 ? count - 1 : null);
+        }
+        if (categoryId != null) {
+            productCounts.merge(categoryId, 1L, Long::sum);
+        }
+    }
+
+    private CategoryResponse toResponse(Entry entry) {
+        CategoryResponse response = new CategoryResponse();
+        response.setId(entry.id());
+        response.setName(entry.name());
+        response.setSlug(entry.slug());
+        response.setDescription(entry.description());
+        response.setImage(entry.image());
+        response.setCreatedAt(entry.createdAt());
+        response.setUpdatedAt(entry.updatedAt());
+        response.setProductCount(productCounts.getOrDefault(entry.id(), 0L));
+        return response;
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(Long id, String name, String slug, String description, String image,
+                         Instant createdAt, Instant updatedAt) {
+
+        static Entry of(Category category) {
+            return new Entry(category.getId(), category.getName(), category.getSlug(), category.getDescription(),
+                    category.getImage(), category.getCreatedAt(), category.getUpdatedAt());
+        }
+
+        // reserves a name and slug while the category is being inserted
+        static Entry pending(String name, String slug) {
+            return new Entry(null, name, slug, null, null, null, null);
+        }
+    }
+
+    private static final class Index {
+        private final Map<Long, Entry> byId = new HashMap<>();
+        // keyed by lower-cased name, matching the case-insensitive lookup of categoryRepository.findByName
+        private final Map<String, Entry> byName = new HashMap<>();
+        private final Map<String, Entry> bySlug = new HashMap<>();
+
+        Index copy() {
+            Index copy = new Index();
+            copy.byId.putAll(byId);
+            copy.byName.putAll(byName);
+            copy.bySlug.putAll(bySlug);
+            return copy;
+        }
+
+        void put(Entry entry) {
+            if (entry.id() != null) {
+                byId.put(entry.id(), entry);
+            }
+            if (entry.name() != null) {
+                // keep the lowest id when names collide
+                byName.merge(key(entry.name()), entry,
+                        (existing, added) -> existing.id() != null && added.id() != null && existing.id() <= added.id() ? existing : added);
+            }
+            if (entry.slug() != null) {
+                bySlug.put(entry.slug(), entry);
+            }
+        }
+
+        void remove(Long id) {
+            Entry previous = byId.remove(id);
+            if (previous != null) {
+                byName.remove(key(previous.name()), previous);
+                bySlug.remove(previous.slug(), previous);
+            }
+        }
+
+        String uniqueSlug(String name) {
+            String base = name.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", "-");
+            String slug = base;
+            for (int suffix = 2; bySlug.containsKey(slug); suffix++) {
+                slug = base + "-" + suffix;
+            }
+            return slug;
+        }
+    }
+}
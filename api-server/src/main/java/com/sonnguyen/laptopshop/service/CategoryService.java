@@ -1,16 +1,22 @@
 package com.sonnguyen.laptopshop.service;
 
+import com.sonnguyen.laptopshop.event.CategoryChangedEvent;
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
 import com.sonnguyen.laptopshop.exception.CommonException;
 import com.sonnguyen.laptopshop.model.Category;
 import com.sonnguyen.laptopshop.payload.CategoryRequest;
 import com.sonnguyen.laptopshop.payload.CategoryResponse;
 import com.sonnguyen.laptopshop.repository.CategoryRepository;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,7 +24,10 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRegistry categoryRegistry;
     private final FileStorageService fileStorageService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final String CATEGORY_NOT_FOUND_BY_ID = "Category not found with id: ";
     private static final String CATEGORY_NOT_FOUND_BY_SLUG = "Category not found with slug: ";
@@ -27,19 +36,35 @@ public class CategoryService {
     private static final String CANNOT_DELETE_CATEGORY_WITH_PRODUCTS = "Cannot delete category with existing products";
 
     public List<CategoryResponse> getAllCategories() {
+        if (categoryRegistry.isReady()) {
+            return categoryRegistry.findAll();
+        }
+        // registry still building: count every category in one GROUP BY instead of one COUNT each
+        Map<Long, Long> productCounts = new HashMap<>();
+        for (Object[] row : categoryRepository.countProductsPerCategory()) {
+            productCounts.put((Long) row[0], (Long) row[1]);
+        }
         List<Category> categories = categoryRepository.findAll();
         return categories.stream()
-                .map(this::convertToResponse)
+                .map(category -> convertToResponse(category, productCounts.getOrDefault(category.getId(), 0L)))
                 .collect(Collectors.toList());
     }
 
     public CategoryResponse getCategoryById(Long id) {
+        if (categoryRegistry.isReady()) {
+            return categoryRegistry.findById(id)
+                    .orElseThrow(() -> new CommonException(CATEGORY_NOT_FOUND_BY_ID + id, HttpStatus.NOT_FOUND));
+        }
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new CommonException(CATEGORY_NOT_FOUND_BY_ID + id, HttpStatus.NOT_FOUND));
         return convertToResponse(category);
     }
 
     public CategoryResponse getCategoryBySlug(String slug) {
+        if (categoryRegistry.isReady()) {
+            return categoryRegistry.findBySlug(slug)
+                    .orElseThrow(() -> new CommonException(CATEGORY_NOT_FOUND_BY_SLUG + slug, HttpStatus.NOT_FOUND));
+        }
         Category category = categoryRepository.findBySlug(slug)
                 .orElseThrow(() -> new CommonException(CATEGORY_NOT_FOUND_BY_SLUG + slug, HttpStatus.NOT_FOUND));
         return convertToResponse(category);
@@ -65,6 +90,7 @@ public class CategoryService {
         }
 
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(savedCategory));
         return convertToResponse(savedCategory);
     }
 
@@ -90,6 +116,7 @@ public class CategoryService {
         }
 
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(CategoryChangedEvent.saved(savedCategory));
         return convertToResponse(savedCategory);
     }
 
@@ -103,10 +130,19 @@ public class CategoryService {
         //    throw new CommonException(CANNOT_DELETE_CATEGORY_WITH_PRODUCTS, HttpStatus.BAD_REQUEST);
         // }
 
+        // products go with the category (cascade), so their in-memory views must drop them too
+        List<Long> productIds = productRepository.findIdsByCategoryId(id);
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(productIds));
+        eventPublisher.publishEvent(CategoryChangedEvent.deleted(id));
     }
 
     private CategoryResponse convertToResponse(Category category) {
+        // Use a separate query to count products to avoid LazyInitializationException
+        return convertToResponse(category, categoryRepository.countProductsByCategoryId(category.getId()));
+    }
+
+    private CategoryResponse convertToResponse(Category category, long productCount) {
         CategoryResponse response = new CategoryResponse();
         response.setId(category.getId());
         response.setName(category.getName());
@@ -115,8 +151,7 @@ public class CategoryService {
         response.setImage(category.getImage());
         response.setCreatedAt(category.getCreatedAt());
         response.setUpdatedAt(category.getUpdatedAt());
-        // Use a separate query to count products to avoid LazyInitializationException
-        response.setProductCount(categoryRepository.countProductsByCategoryId(category.getId()));
+        response.setProductCount(productCount);
         return response;
     }
 }
@@ -0,0 +1,213 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.CouponChangedEvent;
+import com.sonnguyen.laptopshop.event.OrderStatusChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.Coupon;
+import com.sonnguyen.laptopshop.model.CouponRedemption;
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.repository.CouponRedemptionRepository;
+import com.sonnguyen.laptopshop.repository.CouponRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Coupon checks and redemptions for checkout. Active coupons are held in memory and reloaded after
+// every coupon write, so checking a code reads no table. Usage caps are enforced on in-memory atomic
+// counters rather than a counter column, so a widely shared code does not serialize checkouts on one
+// row; each redemption is an insert into coupon_redemptions, from which the counters are loaded.
+// Like HotStockCounters, this assumes a single application instance.
+@Slf4j
+@Component
+public class CouponEngine {
+
+    private final CouponRepository couponRepository;
+    private final CouponRedemptionRepository redemptionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // code -> active coupon; replaced as a whole on every reload
+    private volatile Map<String, Coupon> activeCoupons = Map.of();
+    // coupon id -> redemptions
+    private final ConcurrentMap<UUID, AtomicLong> uses = new ConcurrentHashMap<>();
+    // (coupon id, user id) -> redemptions, loaded on the user's first use of the coupon; only kept for
+    // active coupons with a per-user cap, and dropped on reload once a coupon is no longer one
+    private final ConcurrentMap<UserUse, AtomicLong> userUses = new ConcurrentHashMap<>();
+
+    public CouponEngine(CouponRepository couponRepository, CouponRedemptionRepository redemptionRepository,
+                        TransactionTemplate transactionTemplate) {
+        this.couponRepository = couponRepository;
+        this.redemptionRepository = redemptionRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Runs before the application takes requests, so no checkout sees an empty cache or counters
+    @PostConstruct
+    public void start() {
+        reload();
+        List<Object[]> counts = transactionTemplate.execute(status -> redemptionRepository.countByCoupon());
+        for (Object[] row : counts) {
+            uses.put((UUID) row[0], new AtomicLong(((Number) row[1]).longValue()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCouponChanged(CouponChangedEvent event) {
+        reload();
+    }
+
+    private void reload() {
+        List<Coupon> coupons = transactionTemplate.execute(status -> couponRepository.findByActiveTrue());
+        Map<String, Coupon> byCode = new HashMap<>();
+        for (Coupon coupon : coupons) {
+            byCode.put(coupon.getCode(), coupon);
+        }
+        activeCoupons = Map.copyOf(byCode);
+        LocalDate today = LocalDate.now();
+        Set<UUID> userCapped = new HashSet<>();
+        for (Coupon coupon : coupons) {
+            if (coupon.getMaxUsesPerUser() != null && (coupon.getExpiryDate() == null || !coupon.getExpiryDate().isBefore(today))) {
+                userCapped.add(coupon.getId());
+            }
+        }
+        userUses.keySet().removeIf(key -> !userCapped.contains(key.couponId()));
+        log.debug("Loaded {} active coupons", byCode.size());
+    }
+
+    // The coupon if it can be used today on an order of amount; a null amount skips the minimum
+    public Coupon validate(String code, Double amount) {
+        Coupon coupon = code != null ? activeCoupons.get(code.trim()) : null;
+        if (coupon == null) {
+            throw new CommonException("Invalid coupon code", HttpStatus.BAD_REQUEST);
+        }
+        if (coupon.getExpiryDate() != null && coupon.getExpiryDate().isBefore(LocalDate.now())) {
+            throw new CommonException("Coupon has expired", HttpStatus.BAD_REQUEST);
+        }
+        if (amount != null && coupon.getMinOrderAmount() != null && amount < coupon.getMinOrderAmount()) {
+            throw new CommonException("Minimum order amount for this coupon is " + coupon.getMinOrderAmount(), HttpStatus.BAD_REQUEST);
+        }
+        if (coupon.getMaxUses() != null && usesOf(coupon.getId()).get() >= coupon.getMaxUses()) {
+            throw new CommonException("Coupon usage limit reached", HttpStatus.BAD_REQUEST);
+        }
+        return coupon;
+    }
+
+    // Takes one use of the coupon for the user on an order of amount. Runs in the order's transaction:
+    // the use is given back if it rolls back, and record() must be called there once the order is saved.
+    public Redemption redeem(String code, UUID userId, double amount) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Coupons can only be redeemed inside a transaction");
+        }
+        Coupon coupon = validate(code, amount);
+        AtomicLong userCount = coupon.getMaxUsesPerUser() != null ? userUsesOf(coupon.getId(), userId) : null;
+        if (userCount != null && !tryTake(userCount, coupon.getMaxUsesPerUser())) {
+            throw new CommonException("You have already used this coupon the maximum number of times", HttpStatus.BAD_REQUEST);
+        }
+        AtomicLong count = usesOf(coupon.getId());
+        if (!tryTake(count, coupon.getMaxUses())) {
+            if (userCount != null) {
+                userCount.decrementAndGet();
+            }
+            throw new CommonException("Coupon usage limit reached", HttpStatus.BAD_REQUEST);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    count.decrementAndGet();
+                    if (userCount != null) {
+                        userCount.decrementAndGet();
+                    }
+                }
+            }
+        });
+        double discount = coupon.getDiscountAmount() != null ? Math.max(0, Math.min(coupon.getDiscountAmount(), amount)) : 0;
+        return new Redemption(coupon.getId(), coupon.getCode(), userId, discount);
+    }
+
+    public void record(Redemption redemption, Long orderId) {
+        CouponRedemption row = new CouponRedemption();
+        row.setCouponId(redemption.couponId());
+        row.setUserId(redemption.userId());
+        row.setOrderId(orderId);
+        row.setDiscountAmount(redemption.discount());
+        row.setCreatedAt(Instant.now());
+        redemptionRepository.save(row);
+    }
+
+    // A cancelled order gives its coupon use back, in the cancelling transaction
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (!OrderStatus.CANCELLED.name().equals(event.getStatus())) {
+            return;
+        }
+        List<CouponRedemption> released = redemptionRepository.findByOrderIdIn(event.getPreviousStatuses().keySet());
+        if (released.isEmpty()) {
+            return;
+        }
+        redemptionRepository.deleteAllInBatch(released);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (CouponRedemption redemption : released) {
+                    usesOf(redemption.getCouponId()).decrementAndGet();
+                    AtomicLong userCount = userUses.get(new UserUse(redemption.getCouponId(), redemption.getUserId()));
+                    if (userCount != null) {
+                        userCount.decrementAndGet();
+                    }
+                }
+            }
+        });
+    }
+
+    private AtomicLong usesOf(UUID couponId) {
+        return uses.computeIfAbsent(couponId, id -> new AtomicLong());
+    }
+
+    // The count is read outside the map's lock; it only changes through the counter once that exists,
+    // so whichever of two concurrent first loads is kept holds the same value
+    private AtomicLong userUsesOf(UUID couponId, UUID userId) {
+        UserUse key = new UserUse(couponId, userId);
+        AtomicLong counter = userUses.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        AtomicLong loaded = new AtomicLong(redemptionRepository.countByCouponIdAndUserId(couponId, userId));
+        AtomicLong existing = userUses.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static boolean tryTake(AtomicLong counter, Integer cap) {
+        if (cap == null) {
+            counter.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            long current = counter.get();
+            if (current >= cap) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public record Redemption(UUID couponId, String code, UUID userId, double discount) {
+    }
+
+    private record UserUse(UUID couponId, UUID userId) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.CouponChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.Coupon;
+import com.sonnguyen.laptopshop.repository.CouponRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+// Admin writes to coupons; every write reloads CouponEngine's cache once committed
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class CouponService {
+
+    private final CouponRepository couponRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional(readOnly = true)
+    public List<Coupon> getAllCoupons() {
+        return couponRepository.findAll();
+    }
+
+    public Coupon createCoupon(Coupon coupon) {
+        if (coupon.getCode() == null || coupon.getCode().isBlank()) {
+            throw new CommonException("Coupon code is required", HttpStatus.BAD_REQUEST);
+        }
+        coupon.setCode(coupon.getCode().trim());
+        if (couponRepository.findByCode(coupon.getCode()).isPresent()) {
+            throw new CommonException("Coupon code already exists", HttpStatus.BAD_REQUEST);
+        }
+        coupon.setId(null);
+        validateLimits(coupon);
+        Coupon saved = couponRepository.save(coupon);
+        eventPublisher.publishEvent(new CouponChangedEvent(saved.getCode()));
+        return saved;
+    }
+
+    // The code stays as it is: redemptions and orders refer to it
+    public Coupon updateCoupon(UUID id, Coupon request) {
+        Coupon coupon = couponRepository.findById(id)
+                .orElseThrow(() -> new CommonException("Coupon not found with id: " + id, HttpStatus.NOT_FOUND));
+        coupon.setDiscountAmount(request.getDiscountAmount());
+        coupon.setMinOrderAmount(request.getMinOrderAmount());
+        coupon.setExpiryDate(request.getExpiryDate());
+        coupon.setActive(request.isActive());
+        coupon.setMaxUses(request.getMaxUses());
+        coupon.setMaxUsesPerUser(request.getMaxUsesPerUser());
+        validateLimits(coupon);
+        Coupon saved = couponRepository.save(coupon);
+        eventPublisher.publishEvent(new CouponChangedEvent(saved.getCode()));
+        return saved;
+    }
+
+    private static void validateLimits(Coupon coupon) {
+        if (coupon.getDiscountAmount() != null && coupon.getDiscountAmount() < 0) {
+            throw new CommonException("Discount amount cannot be negative", HttpStatus.BAD_REQUEST);
+        }
+        if ((coupon.getMaxUses() != null && coupon.getMaxUses() < 0)
+                || (coupon.getMaxUsesPerUser() != null && coupon.getMaxUsesPerUser() < 0)) {
+            throw new CommonException("Usage limits cannot be negative", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
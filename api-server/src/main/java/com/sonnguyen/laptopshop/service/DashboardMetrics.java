@@ -0,0 +1,254 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.*;
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.repository.ArchivedOrderRepository;
+import com.sonnguyen.laptopshop.repository.CategoryRepository;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import com.sonnguyen.laptopshop.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Totals for the admin dashboard, kept in memory so a refresh reads counters instead of scanning
+// orders. Orders and users are adjusted by their events once the writing transaction has committed.
+// Product writes don't tell creates from updates, so they trigger a recount of products and
+// categories on the metrics thread, coalesced while one is pending. Everything is recounted from the
+// database every reconcile-interval to correct drift, e.g. from rows changed outside the application.
+@Slf4j
+@Component
+public class DashboardMetrics {
+
+    public record Snapshot(long products, long users, long categories, long orders,
+                           Map<String, Long> ordersByStatus, double revenue, Instant reconciledAt) {
+    }
+
+    private final ProductRepository productRepository;
+    private final UserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long reconcileIntervalMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long products;
+    private long users;
+    private long categories;
+    private final Map<String, Long> ordersByStatus = new HashMap<>();
+    // sum of totalPrice over COMPLETED orders
+    private double revenue;
+    private Instant reconciledAt;
+    // bumped by every event-driven change, so a reconciliation that raced with one is discarded
+    private long version;
+    private volatile boolean ready;
+
+    private final AtomicBoolean catalogRecountPending = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    public DashboardMetrics(ProductRepository productRepository, UserRepository userRepository,
+                            CategoryRepository categoryRepository, OrderRepository orderRepository,
+                            ArchivedOrderRepository archivedOrderRepository, TransactionTemplate transactionTemplate,
+                            @Value("${laptopshop.dashboard.reconcile-interval:10m}") Duration reconcileInterval) {
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.categoryRepository = categoryRepository;
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.reconcileIntervalMillis = Math.max(1, reconcileInterval.toMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconcile();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMillis, reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public Snapshot snapshot() {
+        if (!ready) {
+            reconcile();
+        }
+        lock.lock();
+        try {
+            long orders = ordersByStatus.values().stream().mapToLong(Long::longValue).sum();
+            return new Snapshot(products, users, categories, orders, Map.copyOf(ordersByStatus), revenue, reconciledAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Recounts everything from the database
+    public void reconcile() {
+        long startVersion;
+        lock.lock();
+        try {
+            startVersion = version;
+        } finally {
+            lock.unlock();
+        }
+
+        long productCount = productRepository.count();
+        long categoryCount = categoryRepository.count();
+        long userCount = userRepository.count();
+        Map<String, Long> statusCounts = new HashMap<>();
+        double completedRevenue = 0;
+        // archived orders still count; both tables are read in one transaction so an order archived
+        // meanwhile is counted once
+        List<Object[]> statusRows = transactionTemplate.execute(tx -> {
+            List<Object[]> rows = new ArrayList<>(orderRepository.countAndSumByStatus());
+            rows.addAll(archivedOrderRepository.countAndSumByStatus());
+            return rows;
+        });
+        for (Object[] row : statusRows) {
+            String status = row[0] != null ? (String) row[0] : "UNKNOWN";
+            statusCounts.merge(status, ((Number) row[1]).longValue(), Long::sum);
+            if (OrderStatus.COMPLETED.name().equals(status)) {
+                completedRevenue += ((Number) row[2]).doubleValue();
+            }
+        }
+
+        lock.lock();
+        try {
+            products = productCount;
+            categories = categoryCount;
+            if (ready && version != startVersion) {
+                // an order or user change landed while counting; the next round picks it up
+                log.debug("Dashboard reconciliation raced with a write, keeping the incremental order and user counts");
+                return;
+            }
+            if (ready && (users != userCount || !ordersByStatus.equals(statusCounts) || Math.abs(revenue - completedRevenue) >= 0.01)) {
+                log.info("Dashboard counters drifted and were corrected: users {} -> {}, orders {} -> {}, revenue {} -> {}",
+                        users, userCount, ordersByStatus, statusCounts, revenue, completedRevenue);
+            }
+            users = userCount;
+            ordersByStatus.clear();
+            ordersByStatus.putAll(statusCounts);
+            revenue = completedRevenue;
+            reconciledAt = Instant.now();
+            ready = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        lock.lock();
+        try {
+            version++;
+            adjustOrders(OrderStatus.PENDING.name(), 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        lock.lock();
+        try {
+            version++;
+            for (Map.Entry<Long, String> change : event.getPreviousStatuses().entrySet()) {
+                adjustOrders(change.getValue(), -1);
+                adjustOrders(event.getStatus(), 1);
+                if (OrderStatus.COMPLETED.name().equals(event.getStatus())) {
+                    revenue += event.getTotalPrices().getOrDefault(change.getKey(), 0.0);
+                } else if (OrderStatus.COMPLETED.name().equals(change.getValue())) {
+                    revenue -= event.getTotalPrices().getOrDefault(change.getKey(), 0.0);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        lock.lock();
+        try {
+            version++;
+            users += event.getType() == UserChangedEvent.Type.CREATED ? 1 : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() != ProductChangedEvent.Type.STOCK_CHANGED) {
+            scheduleCatalogRecount();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        scheduleCatalogRecount();
+    }
+
+    // under lock; statuses without orders are left out, as in the reconciled counts
+    private void adjustOrders(String status, long delta) {
+        ordersByStatus.merge(status, delta, (count, change) -> count + change == 0 ? null : count + change);
+    }
+
+    private void scheduleCatalogRecount() {
+        ScheduledExecutorService current = executor;
+        if (current == null || !catalogRecountPending.compareAndSet(false, true)) {
+            return;
+        }
+        current.execute(() -> {
+            // cleared first, so a write committed during the count schedules another one
+            catalogRecountPending.set(false);
+            try {
+                long productCount = productRepository.count();
+                long categoryCount = categoryRepository.count();
+                lock.lock();
+                try {
+                    products = productCount;
+                    categories = categoryCount;
+                } finally {
+                    lock.unlock();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Product and category recount failed; the next reconciliation retries it", e);
+            }
+        });
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("Dashboard reconciliation failed", e);
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.sonnguyen.laptopshop.service;
 
 import com.sonnguyen.laptopshop.model.Product;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.util.List;
 
 public interface ExcelService {
-    void save(MultipartFile file);
+    // Rows of a staged workbook for ProductImporter, blank rows skipped
+    ProductImporter.RowSource rowSource(File file);
     ByteArrayInputStream loadTemplate();
     List<Product> getAllProducts();
 }
@@ -0,0 +1,442 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.StockJournalCheckpoint;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import com.sonnguyen.laptopshop.repository.StockJournalCheckpointRepository;
+import com.sonnguyen.laptopshop.utils.GroupCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Flash-sale ("hot SKU") mode: quantity of the configured products is held in striped in-memory
+// counters, so checkouts for them decide in memory instead of queueing on the product row.
+// Every reservation is appended to a local journal (fsync'd, with concurrent appends sharing one
+// fsync) before it counts; a single flusher coalesces journal entries into one UPDATE per product
+// and records the applied sequence in the same transaction. At startup, entries past that sequence are replayed before counters are loaded.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "laptopshop.hot-stock.enabled", havingValue = "true")
+public class HotStockCounters {
+
+    private static final String JOURNAL_FILE = "stock.journal";
+    private static final long JOURNAL_ROTATE_BYTES = 4L * 1024 * 1024;
+
+    private final ProductRepository productRepository;
+    private final StockJournalCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long[] productIds;
+    private final int stripeCount;
+    private final long flushIntervalMillis;
+    private final Path journalPath;
+
+    // fixed once started; the set of hot products only changes with configuration and a restart
+    private volatile Map<Long, Stock> stocks = Map.of();
+
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    private long nextSequence;
+    // a failed append may leave a torn line, so the journal takes no more entries after one
+    private volatile boolean journalBroken;
+    private final GroupCommit journalSync = new GroupCommit();
+    // appended under journalLock, so entries are in sequence order
+    private final Queue<Delta> pending = new ConcurrentLinkedQueue<>();
+    // drained from pending but not yet committed to the database; flusher thread only
+    private final List<Delta> unapplied = new ArrayList<>();
+    private ScheduledExecutorService flusher;
+
+    public HotStockCounters(ProductRepository productRepository, StockJournalCheckpointRepository checkpointRepository,
+                            TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                            @Value("${laptopshop.hot-stock.product-ids:}") long[] productIds,
+                            @Value("${laptopshop.hot-stock.stripes:8}") int stripeCount,
+                            @Value("${laptopshop.hot-stock.flush-interval:500ms}") Duration flushInterval,
+                            @Value("${laptopshop.hot-stock.journal-dir:data/stock-journal}") String journalDir) {
+        this.productRepository = productRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.productIds = productIds.clone();
+        this.stripeCount = Math.max(1, stripeCount);
+        this.flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+        this.journalPath = Paths.get(journalDir).resolve(JOURNAL_FILE);
+    }
+
+    // Runs before the application takes requests, so no checkout sees stock the journal has not restored
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(journalPath.getParent());
+        long checkpoint = transactionTemplate.execute(status -> checkpointRepository.findById(StockJournalCheckpoint.SINGLETON_ID)
+                .map(StockJournalCheckpoint::getLastSequence)
+                .orElse(0L));
+        List<Delta> replay = readJournal(checkpoint);
+        if (!replay.isEmpty()) {
+            apply(replay);
+            log.info("Replayed {} stock journal entries after sequence {}", replay.size(), checkpoint);
+        }
+        nextSequence = Math.max(checkpoint, replay.isEmpty() ? 0 : replay.get(replay.size() - 1).sequence()) + 1;
+        synchronized (journalLock) {
+            // everything in the old journal is applied now
+            rewriteJournalLocked(List.of());
+        }
+
+        List<Long> ids = Arrays.stream(productIds).boxed().toList();
+        List<Object[]> rows = ids.isEmpty() ? List.of() : transactionTemplate.execute(status -> productRepository.findStockByIds(ids));
+        Map<Long, Stock> loaded = new HashMap<>();
+        for (Object[] row : rows) {
+            long quantity = row[1] != null ? (Long) row[1] : 0;
+            loaded.put((Long) row[0], new Stock(Math.max(0, quantity), stripeCount));
+        }
+        if (loaded.size() < ids.size()) {
+            log.warn("Hot stock products not found and left in normal mode: {}",
+                    ids.stream().filter(id -> !loaded.containsKey(id)).toList());
+        }
+        stocks = Map.copyOf(loaded);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "hot-stock-flusher"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Hot stock mode for {} products, {} stripes each, flushed every {} ms",
+                loaded.size(), stripeCount, flushIntervalMillis);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        flushQuietly();
+        synchronized (journalLock) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                log.warn("Could not close the stock journal", e);
+            }
+        }
+    }
+
+    public boolean isHot(Long productId) {
+        return productId != null && stocks.containsKey(productId);
+    }
+
+    public long available(Long productId) {
+        Stock stock = stocks.get(productId);
+        return stock != null ? stock.available() : 0;
+    }
+
+    // Takes amount units if they are there. Must run inside the order's transaction: if it rolls
+    // back, the units are journalled back and returned to the counters.
+    public boolean reserve(Long productId, long amount) {
+        Stock stock = stocks.get(productId);
+        if (!stock.take(amount)) {
+            return false;
+        }
+        long position;
+        try {
+            position = write(productId, amount);
+        } catch (IOException e) {
+            stock.put(amount);
+            throw new CommonException("Stock journal is unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        try {
+            awaitDurable(position);
+        } catch (IOException e) {
+            // the entry is queued for the database already, so the units stay taken
+            log.error("Could not sync the stock journal; {} units of product {} stay withheld", amount, productId, e);
+            throw new CommonException("Stock journal is unavailable", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    giveBack(productId, amount);
+                }
+            }
+        });
+        return true;
+    }
+
+    // Returns units, e.g. of a cancelled order, once the caller's transaction has committed
+    public void release(Long productId, long amount) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    giveBack(productId, amount);
+                }
+            });
+        } else {
+            giveBack(productId, amount);
+        }
+    }
+
+    private void giveBack(Long productId, long amount) {
+        try {
+            awaitDurable(write(productId, -amount));
+            stocks.get(productId).put(amount);
+        } catch (IOException e) {
+            // not known to be journalled, so the database may still count them as sold: keep them withheld
+            log.error("Could not journal the return of {} units of product {}; they stay withheld", amount, productId, e);
+        }
+    }
+
+    // Appends an entry without syncing and returns its position for awaitDurable
+    private long write(Long productId, long delta) throws IOException {
+        synchronized (journalLock) {
+            if (journalBroken) {
+                throw new IOException("Stock journal is closed after an earlier write failure");
+            }
+            long sequence = nextSequence;
+            ByteBuffer line = StandardCharsets.UTF_8.encode(sequence + "," + productId + "," + delta + "\n");
+            try {
+                while (line.hasRemaining()) {
+                    journal.write(line);
+                }
+            } catch (IOException e) {
+                journalBroken = true;
+                throw e;
+            }
+            nextSequence++;
+            pending.add(new Delta(sequence, productId, delta));
+            return journalSync.written();
+        }
+    }
+
+    // One fsync covers every entry written before it started
+    private void awaitDurable(long position) throws IOException {
+        try {
+            journalSync.await(position, this::forceJournal);
+        } catch (IOException e) {
+            synchronized (journalLock) {
+                // a rotation finishing meanwhile may have made the entry durable in the new journal
+                if (journalSync.isSynced(position)) {
+                    return;
+                }
+                journalBroken = true;
+            }
+            throw e;
+        }
+    }
+
+    // The channel is forced outside journalLock, so a rotation can close it underneath; the rotation
+    // forced everything the old journal still needed into the new one, so that counts as synced
+    private void forceJournal() throws IOException {
+        FileChannel channel;
+        synchronized (journalLock) {
+            channel = journal;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            synchronized (journalLock) {
+                if (journal == channel) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // entries stay in unapplied and are retried on the next run
+            log.error("Hot stock flush failed", e);
+        }
+    }
+
+    private synchronized void flush() throws IOException {
+        for (Delta delta = pending.poll(); delta != null; delta = pending.poll()) {
+            unapplied.add(delta);
+        }
+        if (unapplied.isEmpty()) {
+            return;
+        }
+        apply(unapplied);
+        unapplied.clear();
+
+        synchronized (journalLock) {
+            if (!journalBroken && journal.size() > JOURNAL_ROTATE_BYTES) {
+                // what is still pending has not been applied and moves to the new journal
+                rewriteJournalLocked(new ArrayList<>(pending));
+            }
+        }
+    }
+
+    // One UPDATE per product for all its entries, committed with the checkpoint
+    private void apply(List<Delta> deltas) {
+        Map<Long, Long> totals = new TreeMap<>();
+        long lastSequence = 0;
+        for (Delta delta : deltas) {
+            totals.merge(delta.productId(), delta.amount(), Long::sum);
+            lastSequence = Math.max(lastSequence, delta.sequence());
+        }
+        long appliedSequence = lastSequence;
+        transactionTemplate.executeWithoutResult(status -> {
+            totals.forEach((productId, amount) -> {
+                if (amount != 0) {
+                    productRepository.applyStockDelta(productId, amount);
+                }
+            });
+            StockJournalCheckpoint checkpoint = checkpointRepository.findById(StockJournalCheckpoint.SINGLETON_ID)
+                    .orElseGet(StockJournalCheckpoint::new);
+            checkpoint.setLastSequence(appliedSequence);
+            checkpoint.setUpdatedAt(Instant.now());
+            checkpointRepository.save(checkpoint);
+            eventPublisher.publishEvent(ProductChangedEvent.stockChanged(totals.keySet()));
+        });
+    }
+
+    private List<Delta> readJournal(long afterSequence) throws IOException {
+        List<Delta> deltas = new ArrayList<>();
+        if (!Files.exists(journalPath)) {
+            return deltas;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    log.warn("Skipping torn stock journal line: {}", line);
+                    continue;
+                }
+                try {
+                    Delta delta = new Delta(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                    if (delta.sequence() > afterSequence) {
+                        deltas.add(delta);
+                    }
+                } catch (NumberFormatException e) {
+                    log.warn("Skipping torn stock journal line: {}", line);
+                }
+            }
+        }
+        deltas.sort(Comparator.comparingLong(Delta::sequence));
+        return deltas;
+    }
+
+    // Swaps in a journal holding only the given entries
+    private void rewriteJournalLocked(List<Delta> entries) throws IOException {
+        Path next = journalPath.resolveSibling(JOURNAL_FILE + ".next");
+        try (FileChannel channel = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder content = new StringBuilder();
+            for (Delta delta : entries) {
+                content.append(delta.sequence()).append(',').append(delta.productId()).append(',').append(delta.amount()).append('\n');
+            }
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(content.toString());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        Files.move(next, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // entries not carried over are applied to the database, the rest are in the forced new file
+        journalSync.markSynced();
+    }
+
+    private record Delta(long sequence, long productId, long amount) {
+    }
+
+    // Available units split across stripes, each on its own cache line, so concurrent buyers of
+    // one product mostly CAS different slots. A take larger than a stripe gathers from the others.
+    private static final class Stock {
+        private static final int PADDING = 8;
+
+        private final AtomicLongArray slots;
+        private final int stripes;
+
+        Stock(long quantity, int stripes) {
+            this.stripes = stripes;
+            this.slots = new AtomicLongArray(stripes * PADDING);
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                slots.set(stripe * PADDING, quantity / stripes + (stripe < quantity % stripes ? 1 : 0));
+            }
+        }
+
+        boolean take(long amount) {
+            int home = home();
+            long remaining = amount;
+            long[] taken = new long[stripes];
+            for (int i = 0; i < stripes && remaining > 0; i++) {
+                int stripe = (home + i) % stripes;
+                long got = takeUpTo(stripe, remaining);
+                taken[stripe] = got;
+                remaining -= got;
+            }
+            if (remaining == 0) {
+                return true;
+            }
+            // not enough across all stripes: put back what was gathered
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                if (taken[stripe] > 0) {
+                    slots.addAndGet(stripe * PADDING, taken[stripe]);
+                }
+            }
+            return false;
+        }
+
+        void put(long amount) {
+            slots.addAndGet(home() * PADDING, amount);
+        }
+
+        long available() {
+            long sum = 0;
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                sum += slots.get(stripe * PADDING);
+            }
+            return sum;
+        }
+
+        private long takeUpTo(int stripe, long wanted) {
+            int index = stripe * PADDING;
+            while (true) {
+                long current = slots.get(index);
+                if (current <= 0) {
+                    return 0;
+                }
+                long got = Math.min(current, wanted);
+                if (slots.compareAndSet(index, current, current - got)) {
+                    return got;
+                }
+            }
+        }
+
+        private int home() {
+            return (int) Math.floorMod(Thread.currentThread().getId() * 0x9E3779B97F4A7C15L, (long) stripes);
+        }
+    }
+}
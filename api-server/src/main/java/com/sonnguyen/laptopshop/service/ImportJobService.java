@@ -0,0 +1,294 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.*;
+import com.sonnguyen.laptopshop.payload.request.BulkProductRequest;
+import com.sonnguyen.laptopshop.payload.response.ImportJobResponse;
+import com.sonnguyen.laptopshop.payload.response.ImportRowError;
+import com.sonnguyen.laptopshop.repository.ImportJobErrorRepository;
+import com.sonnguyen.laptopshop.repository.ImportJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs product imports in the background. Uploads are staged on local disk and processed by a bounded
+// worker pool through ProductImporter; each chunk commits together with the job's progress, so a job
+// interrupted by a restart resumes after its last committed chunk.
+@Slf4j
+@Service
+public class ImportJobService {
+
+    private static final int MAX_STORED_ERRORS = 1000;
+    private static final int REPORTED_ERRORS = 100;
+
+    private final ImportJobRepository importJobRepository;
+    private final ImportJobErrorRepository importJobErrorRepository;
+    private final ProductImporter productImporter;
+    private final ExcelService excelService;
+    private final ObjectMapper objectMapper;
+    private final Path stagingDir;
+    private final ThreadPoolExecutor executor;
+
+    public ImportJobService(ImportJobRepository importJobRepository, ImportJobErrorRepository importJobErrorRepository,
+                            ProductImporter productImporter, ExcelService excelService, ObjectMapper objectMapper,
+                            @Value("${laptopshop.import.staging-dir:data/imports}") String stagingDir,
+                            @Value("${laptopshop.import.workers:2}") int workers,
+                            @Value("${laptopshop.import.queue-capacity:20}") int queueCapacity) {
+        this.importJobRepository = importJobRepository;
+        this.importJobErrorRepository = importJobErrorRepository;
+        this.productImporter = productImporter;
+        this.excelService = excelService;
+        this.objectMapper = objectMapper;
+        this.stagingDir = Paths.get(stagingDir);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "product-import-" + threadCount.incrementAndGet()));
+    }
+
+    public ImportJobResponse submitExcel(MultipartFile file, String username) {
+        return submit(ImportJobType.EXCEL, file.getOriginalFilename(), ".xlsx", username, file::transferTo);
+    }
+
+    public ImportJobResponse submitBulk(List<BulkProductRequest> rows, String username) {
+        return submit(ImportJobType.BULK_JSON, null, ".json", username, path -> objectMapper.writeValue(path.toFile(), rows));
+    }
+
+    public ImportJobResponse getJob(UUID jobId) {
+        ImportJob job = importJobRepository.findById(jobId)
+                .orElseThrow(() -> new CommonException("Import job not found", HttpStatus.NOT_FOUND));
+        List<ImportRowError> errors = importJobErrorRepository.findByJobIdOrderByRowNumber(jobId, PageRequest.ofSize(REPORTED_ERRORS))
+                .stream()
+                .map(error -> new ImportRowError(error.getRowNumber(), error.getMessage()))
+                .toList();
+        ImportJobResponse response = toResponse(job);
+        response.setErrors(errors);
+        return response;
+    }
+
+    public Page<ImportJobResponse> getJobs(Pageable pageable) {
+        Pageable newestFirst = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "createdAt"));
+        return importJobRepository.findAll(newestFirst).map(ImportJobService::toResponse);
+    }
+
+    // Picks up jobs that were queued or running when the application stopped
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (ImportJob job : importJobRepository.findByStatusInOrderByCreatedAt(EnumSet.of(ImportJobStatus.QUEUED, ImportJobStatus.RUNNING))) {
+            log.info("Resuming import job {} after row {}", job.getId(), job.getLastCommittedRow());
+            try {
+                executor.execute(() -> process(job.getId()));
+            } catch (RejectedExecutionException e) {
+                fail(job.getId(), "Import queue is full");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // interrupted jobs stay RUNNING and are resumed on the next start
+        executor.shutdownNow();
+    }
+
+    private ImportJobResponse submit(ImportJobType type, String fileName, String extension, String username, Stager stager) {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new CommonException("Too many imports in progress, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        ImportJob job = new ImportJob();
+        job.setType(type);
+        job.setFileName(fileName);
+        job.setCreatedBy(username);
+        job = importJobRepository.save(job);
+
+        Path staged = stagingDir.resolve(job.getId() + extension);
+        try {
+            Files.createDirectories(stagingDir);
+            stager.stage(staged);
+        } catch (IOException e) {
+            importJobRepository.delete(job);
+            throw new CommonException("Could not stage import: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        job.setStagedPath(staged.toString());
+        job = importJobRepository.save(job);
+
+        UUID jobId = job.getId();
+        try {
+            executor.execute(() -> process(jobId));
+        } catch (RejectedExecutionException e) {
+            fail(jobId, "Import queue is full");
+            throw new CommonException("Too many imports in progress, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return toResponse(job);
+    }
+
+    private void process(UUID jobId) {
+        ImportJob job = importJobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() == ImportJobStatus.COMPLETED || job.getStatus() == ImportJobStatus.FAILED) {
+            return;
+        }
+        job.setStatus(ImportJobStatus.RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(Instant.now());
+        }
+        job = importJobRepository.save(job);
+
+        AtomicLong storedErrors = new AtomicLong(job.getFailedRows());
+        try {
+            productImporter.run(rowSource(job), job.getLastCommittedRow(), (lastRow, imported, errors) -> {
+                importJobRepository.recordChunk(jobId, lastRow, imported, errors.size());
+                List<ImportJobError> kept = errors.stream()
+                        .limit(Math.max(0, MAX_STORED_ERRORS - storedErrors.get()))
+                        .map(error -> {
+                            ImportJobError entity = new ImportJobError();
+                            entity.setJobId(jobId);
+                            entity.setRowNumber(error.getRow());
+                            entity.setMessage(truncate(error.getMessage(), 1000));
+                            return entity;
+                        })
+                        .toList();
+                importJobErrorRepository.saveAll(kept);
+                storedErrors.addAndGet(kept.size());
+            });
+        } catch (CancellationException e) {
+            log.info("Import job {} interrupted, it will resume on restart", jobId);
+            return;
+        } catch (RuntimeException e) {
+            log.error("Import job {} failed", jobId, e);
+            fail(jobId, e.getMessage());
+            deleteStaged(job);
+            return;
+        }
+
+        ImportJob finished = importJobRepository.findById(jobId).orElseThrow();
+        finished.setStatus(ImportJobStatus.COMPLETED);
+        finished.setFinishedAt(Instant.now());
+        importJobRepository.save(finished);
+        deleteStaged(finished);
+        log.info("Import job {} completed: {} imported, {} failed", jobId, finished.getImportedRows(), finished.getFailedRows());
+    }
+
+    private ProductImporter.RowSource rowSource(ImportJob job) {
+        Path staged = Paths.get(job.getStagedPath());
+        if (job.getType() == ImportJobType.EXCEL) {
+            return excelService.rowSource(staged.toFile());
+        }
+        // bulk rows are read one object at a time from the staged JSON array
+        return consumer -> {
+            try (MappingIterator<BulkProductRequest> rows = objectMapper.readerFor(BulkProductRequest.class).readValues(staged.toFile())) {
+                int rowNumber = 0;
+                while (rows.hasNext()) {
+                    BulkProductRequest row = rows.next();
+                    consumer.accept(++rowNumber, () -> toProduct(row));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // Same checks as the Product constraints; the category is resolved by ProductImporter
+    private static Product toProduct(BulkProductRequest row) {
+        if (row.getName() == null || row.getName().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (row.getPrice() <= 0) {
+            throw new IllegalArgumentException("Price must be greater than 0");
+        }
+        if (row.getDescription() == null || row.getDescription().isBlank()) {
+            throw new IllegalArgumentException("Description is required");
+        }
+        if (row.getQuantity() < 0) {
+            throw new IllegalArgumentException("Quantity must be non-negative");
+        }
+        Product product = new Product();
+        product.setName(row.getName());
+        product.setPrice(row.getPrice());
+        product.setImage(row.getImage());
+        product.setDescription(row.getDescription());
+        product.setQuantity(row.getQuantity());
+        product.setFactory(row.getFactory());
+        product.setTarget(row.getTarget());
+        product.setSold(0L);
+        Category category = new Category();
+        category.setId(row.getCategoryId());
+        product.setCategory(category);
+        return product;
+    }
+
+    private void fail(UUID jobId, String message) {
+        importJobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(ImportJobStatus.FAILED);
+            job.setError(truncate(message, 255));
+            job.setFinishedAt(Instant.now());
+            importJobRepository.save(job);
+        });
+    }
+
+    private void deleteStaged(ImportJob job) {
+        if (job.getStagedPath() == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(job.getStagedPath()));
+        } catch (IOException e) {
+            log.warn("Could not delete staged import {}", job.getStagedPath(), e);
+        }
+    }
+
+    private static ImportJobResponse toResponse(ImportJob job) {
+        ImportJobResponse response = new ImportJobResponse();
+        response.setId(job.getId());
+        response.setType(job.getType());
+        response.setStatus(job.getStatus());
+        response.setFileName(job.getFileName());
+        response.setImportedRows(job.getImportedRows());
+        response.setFailedRows(job.getFailedRows());
+        response.setProcessedRows(job.getImportedRows() + job.getFailedRows());
+        response.setLastCommittedRow(job.getLastCommittedRow());
+        response.setError(job.getError());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setFinishedAt(job.getFinishedAt());
+        if (job.getStartedAt() != null) {
+            Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now();
+            long millis = Math.max(1, Duration.between(job.getStartedAt(), end).toMillis());
+            response.setRowsPerSecond(response.getProcessedRows() * 1000.0 / millis);
+        }
+        return response;
+    }
+
+    private static String truncate(String value, int length) {
+        return value != null && value.length() > length ? value.substring(0, length) : value;
+    }
+
+    @FunctionalInterface
+    private interface Stager {
+        void stage(Path path) throws IOException;
+    }
+}
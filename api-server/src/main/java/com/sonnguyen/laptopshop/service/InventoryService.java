@@ -0,0 +1,120 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Stock reservations for checkout. Every line is a single conditional UPDATE (quantity >= n), so
+// buyers of the same SKU only wait on that product's row lock and stock cannot be oversold.
+// Products in flash-sale mode are reserved in memory by HotStockCounters instead.
+@Slf4j
+@Service
+public class InventoryService {
+
+    private final ProductRepository productRepository;
+    private final ObjectProvider<HotStockCounters> hotStock;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public InventoryService(ProductRepository productRepository, ObjectProvider<HotStockCounters> hotStock,
+                            @Value("${laptopshop.inventory.max-attempts:3}") int maxAttempts,
+                            @Value("${laptopshop.inventory.backoff:50ms}") Duration backoff) {
+        this.productRepository = productRepository;
+        this.hotStock = hotStock;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoff.toMillis();
+    }
+
+    // True when the product is in flash-sale mode and its stock is decided by HotStockCounters
+    public boolean isHeldInMemory(Long productId) {
+        HotStockCounters counters = hotStock.getIfAvailable();
+        return counters != null && counters.isHot(productId);
+    }
+
+    // Takes productId -> quantity out of stock, all lines or none: when a line is short, the lines
+    // already taken are put back before the exception, so a failed call leaves no writes behind even
+    // when the caller's transaction goes on (queued orders share one). Rows are updated in ascending
+    // id order so two orders sharing products lock them in the same order and cannot deadlock.
+    // Deliberately not @Transactional: a proxy would mark the shared transaction rollback-only.
+    public void reserve(Map<Long, Long> quantities) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Stock can only be reserved inside a transaction");
+        }
+        HotStockCounters counters = hotStock.getIfAvailable();
+        Map<Long, Long> taken = new TreeMap<>();
+        for (Map.Entry<Long, Long> line : new TreeMap<>(quantities).entrySet()) {
+            if (line.getValue() == null || line.getValue() <= 0) {
+                release(taken);
+                throw new CommonException("Invalid item quantity", HttpStatus.BAD_REQUEST);
+            }
+            boolean reserved = counters != null && counters.isHot(line.getKey())
+                    ? counters.reserve(line.getKey(), line.getValue())
+                    : productRepository.reserveStock(line.getKey(), line.getValue()) > 0;
+            if (!reserved) {
+                release(taken);
+                String name = productRepository.findById(line.getKey())
+                        .orElseThrow(() -> new CommonException("Product not found", HttpStatus.NOT_FOUND))
+                        .getName();
+                throw new CommonException("Insufficient product quantity for product: " + name, HttpStatus.BAD_REQUEST);
+            }
+            taken.put(line.getKey(), line.getValue());
+        }
+    }
+
+    // Puts reserved stock back, e.g. when an order is cancelled
+    public void release(Map<Long, Long> quantities) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Stock can only be released inside a transaction");
+        }
+        HotStockCounters counters = hotStock.getIfAvailable();
+        for (Map.Entry<Long, Long> line : new TreeMap<>(quantities).entrySet()) {
+            if (line.getValue() == null || line.getValue() <= 0) {
+                continue;
+            }
+            if (counters != null && counters.isHot(line.getKey())) {
+                counters.release(line.getKey(), line.getValue());
+            } else {
+                productRepository.releaseStock(line.getKey(), line.getValue());
+            }
+        }
+    }
+
+    // Runs a transactional attempt, retrying with jittered exponential backoff when it loses a
+    // deadlock, times out on a row lock or hits a stale version. The attempt must open its own
+    // transaction, since the failed one has already been rolled back.
+    public <T> T retrying(Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return attempt.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attemptNumber >= maxAttempts) {
+                    throw e;
+                }
+                long delay = backoffMillis << (attemptNumber - 1);
+                log.debug("Stock update conflict on attempt {}, retrying in ~{} ms: {}", attemptNumber, delay, e.getMessage());
+                sleep(delay + ThreadLocalRandom.current().nextLong(delay + 1));
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException("Interrupted while retrying a stock update", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+}
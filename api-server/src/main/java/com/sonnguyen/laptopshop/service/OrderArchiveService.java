@@ -0,0 +1,151 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.repository.ArchivedOrderDetailRepository;
+import com.sonnguyen.laptopshop.repository.ArchivedOrderRepository;
+import com.sonnguyen.laptopshop.repository.OrderDetailRepository;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Moves orders that have been COMPLETED or CANCELLED for longer than laptopshop.order-archive.age
+// into orders_archive and order_details_archive, one chunk per transaction. A moved order leaves the
+// live tables in the same transaction, so a run cut short simply carries on at the next one.
+@Slf4j
+@Service
+public class OrderArchiveService {
+
+    private static final List<String> ARCHIVED_STATUSES = List.of(OrderStatus.COMPLETED.name(), OrderStatus.CANCELLED.name());
+
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final ArchivedOrderDetailRepository archivedOrderDetailRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration age;
+    private final int chunkSize;
+    private final Duration interval;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderArchiveService(OrderRepository orderRepository, OrderDetailRepository orderDetailRepository,
+                               ArchivedOrderRepository archivedOrderRepository,
+                               ArchivedOrderDetailRepository archivedOrderDetailRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${laptopshop.order-archive.age:365d}") Duration age,
+                               @Value("${laptopshop.order-archive.chunk-size:500}") int chunkSize,
+                               @Value("${laptopshop.order-archive.interval:24h}") Duration interval) {
+        this.orderRepository = orderRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.archivedOrderDetailRepository = archivedOrderDetailRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.age = age;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.interval = interval;
+    }
+
+    // A zero interval leaves archiving to POST /orders/archive
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedule() {
+        if (!interval.isZero() && !interval.isNegative()) {
+            executor.scheduleWithFixedDelay(this::run, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // False when a run is already in progress
+    public boolean start() {
+        if (running.get()) {
+            return false;
+        }
+        executor.execute(this::run);
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    // Completed orders with an id above afterId, live or archived, by id. Call it and saleLines in one
+    // transaction: an order archived meanwhile is then seen in exactly one of the tables.
+    public List<Long> completedIdsAfter(long afterId, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        TreeSet<Long> ids = new TreeSet<>(orderRepository.findIdsByStatusAfter(OrderStatus.COMPLETED.name(), afterId, null, page));
+        ids.addAll(archivedOrderRepository.findIdsByStatusAfter(OrderStatus.COMPLETED.name(), afterId, page));
+        return ids.stream().limit(limit).toList();
+    }
+
+    // OrderRepository.findSaleLines over live and archived orders, lines of an order together
+    public List<Object[]> saleLines(Collection<Long> orderIds) {
+        List<Object[]> rows = new ArrayList<>(orderRepository.findSaleLines(orderIds));
+        rows.addAll(archivedOrderRepository.findSaleLines(orderIds));
+        rows.sort(Comparator.comparing(row -> (Long) row[0]));
+        return rows;
+    }
+
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Instant cutoff = Instant.now().minus(age);
+            long start = System.currentTimeMillis();
+            long afterId = 0;
+            int archived = 0;
+            List<Long> batch;
+            do {
+                batch = orderRepository.findIdsToArchive(ARCHIVED_STATUSES, cutoff, afterId, PageRequest.of(0, chunkSize));
+                if (!batch.isEmpty()) {
+                    List<Long> chunk = batch;
+                    archived += Objects.requireNonNull(transactionTemplate.execute(tx -> moveChunk(chunk)));
+                    afterId = batch.get(batch.size() - 1);
+                }
+            } while (batch.size() == chunkSize && !Thread.currentThread().isInterrupted());
+            if (archived > 0) {
+                log.info("Archived {} orders finished before {} in {} ms", archived, cutoff, System.currentTimeMillis() - start);
+            }
+        } catch (RuntimeException e) {
+            log.error("Order archiving failed; it carries on at the next run", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int moveChunk(List<Long> orderIds) {
+        // locks the orders, and skips any that are no longer in a final status
+        List<Long> ids = orderRepository.lockStatuses(orderIds, ARCHIVED_STATUSES).stream()
+                .map(row -> ((Number) row[0]).longValue())
+                .toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        archivedOrderRepository.copyFromOrders(ids, Instant.now());
+        archivedOrderDetailRepository.copyFromOrderDetails(ids);
+        orderDetailRepository.deleteByOrderIdIn(ids);
+        return orderRepository.deleteByIdIn(ids);
+    }
+}
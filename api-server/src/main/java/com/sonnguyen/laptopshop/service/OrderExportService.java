@@ -0,0 +1,152 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sonnguyen.laptopshop.payload.response.OrderDetailResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+// Writes every order straight from OrderRepository.forEachOrder to the response, one order at a time.
+// Not transactional: the export reads on its own streaming connection.
+@Service
+public class OrderExportService {
+
+    public enum Format {
+        JSON("application/json", "json"),
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final List<String> CSV_HEADER = List.of("order_id", "order_date", "status", "username", "email",
+            "receiver_name", "receiver_phone", "receiver_address", "total_price",
+            "line_id", "product_id", "product_name", "category_name", "quantity", "price");
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(OrderRepository orderRepository, ObjectMapper objectMapper) {
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public void export(Format format, String status, OutputStream out) throws IOException {
+        try {
+            switch (format) {
+                case JSON, NDJSON -> writeJson(format == Format.NDJSON, status, out);
+                case CSV -> writeCsv(status, out);
+            }
+        } catch (UncheckedIOException e) {
+            // usually the client went away mid-download
+            throw e.getCause();
+        }
+    }
+
+    // A JSON array, or NDJSON with one order per line
+    private void writeJson(boolean lines, String status, OutputStream out) throws IOException {
+        // the container flushes its buffer as it fills; flushing after every order would not help
+        ObjectWriter writer = objectMapper.writerFor(OrderResponse.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        if (!lines) {
+            generator.writeStartArray();
+        }
+        orderRepository.forEachOrder(status, order -> {
+            try {
+                writer.writeValue(generator, order);
+                if (lines) {
+                    generator.writeRaw('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (!lines) {
+            generator.writeEndArray();
+        }
+        generator.flush();
+    }
+
+    // One row per order line; an order without lines gets one row with the line columns empty
+    private void writeCsv(String status, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeCsvRow(writer, CSV_HEADER);
+        orderRepository.forEachOrder(status, order -> {
+            try {
+                if (order.getOrderDetails().isEmpty()) {
+                    writeCsvRow(writer, csvRow(order, null));
+                }
+                for (OrderDetailResponse detail : order.getOrderDetails()) {
+                    writeCsvRow(writer, csvRow(order, detail));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private static List<Object> csvRow(OrderResponse order, OrderDetailResponse detail) {
+        boolean hasUser = order.getUser() != null;
+        boolean hasProduct = detail != null && detail.getProduct() != null;
+        return Arrays.asList(order.getId(), order.getOrderDate(), order.getStatus(),
+                hasUser ? order.getUser().getUsername() : null, hasUser ? order.getUser().getEmail() : null,
+                order.getReceiverName(), order.getReceiverPhone(), order.getReceiverAddress(), order.getTotalPrice(),
+                detail != null ? detail.getId() : null,
+                hasProduct ? detail.getProduct().getId() : null,
+                hasProduct ? detail.getProduct().getName() : null,
+                hasProduct ? detail.getProduct().getCategoryName() : null,
+                detail != null ? detail.getQuantity() : null,
+                detail != null ? detail.getPrice() : null);
+    }
+
+    private static void writeCsvRow(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvField(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (!(value instanceof String text)) {
+            return value instanceof Instant instant ? instant.toString() : value.toString();
+        }
+        // spreadsheet apps run cells starting with these as formulas; names and addresses come from customers
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
@@ -0,0 +1,268 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.OrderIdempotencyKey;
+import com.sonnguyen.laptopshop.payload.request.OrderRequest;
+import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.repository.OrderIdempotencyKeyRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Makes order creation idempotent per (user, Idempotency-Key). Completed results are kept in a bounded
+// LRU in front of the order_idempotency_keys table; a duplicate that arrives while the first request
+// is still running waits for its result instead of placing a second order. A key is remembered for
+// retention: older results are ignored on lookup and purged on a schedule, and the key may be reused.
+@Slf4j
+@Component
+public class OrderIdempotencyStore {
+
+    public static final int MAX_KEY_LENGTH = 100;
+
+    private final OrderIdempotencyKeyRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    private final Duration retention;
+    private final Duration waitTimeout;
+    private final Duration purgeInterval;
+
+    private final LinkedHashMap<String, Completed> completed;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentMap<String, CompletableFuture<OrderResponse>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderIdempotencyStore(OrderIdempotencyKeyRepository repository, TransactionTemplate transactionTemplate,
+                                 ObjectMapper objectMapper,
+                                 @Value("${laptopshop.idempotency.max-size:10000}") int maxSize,
+                                 @Value("${laptopshop.idempotency.retention:24h}") Duration retention,
+                                 @Value("${laptopshop.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                                 @Value("${laptopshop.idempotency.purge-interval:1h}") Duration purgeInterval) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+        this.retention = retention;
+        this.waitTimeout = waitTimeout;
+        this.purgeInterval = purgeInterval;
+        this.completed = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // A zero interval purges once at startup only
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePurge() {
+        if (!purgeInterval.isZero() && !purgeInterval.isNegative()) {
+            purger.scheduleWithFixedDelay(this::purgeQuietly, 0, purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            purger.execute(this::purgeQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        purger.shutdownNow();
+    }
+
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        lock.lock();
+        try {
+            completed.values().removeIf(entry -> expired(entry.createdAt()));
+        } finally {
+            lock.unlock();
+        }
+        Integer purged = transactionTemplate.execute(status -> repository.deleteCreatedBefore(cutoff));
+        log.info("Purged {} expired order idempotency keys", purged);
+    }
+
+    private void purgeQuietly() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            log.warn("Could not purge expired order idempotency keys", e);
+        }
+    }
+
+    public String fingerprint(OrderRequest request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the order request", e);
+        }
+    }
+
+    // Returns the stored result for the key or runs placeOrder, which must call record() inside the
+    // order's transaction. Failed attempts store nothing, so the key can be retried.
+    public OrderResponse execute(String username, String key, String fingerprint, Supplier<OrderResponse> placeOrder) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new CommonException("Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters", HttpStatus.BAD_REQUEST);
+        }
+        String scope = scope(username, key);
+        while (true) {
+            Optional<OrderResponse> stored = findCompleted(scope, username, key, fingerprint);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+
+            CompletableFuture<OrderResponse> mine = new CompletableFuture<>();
+            CompletableFuture<OrderResponse> running = inFlight.putIfAbsent(scope, mine);
+            if (running != null) {
+                // once it finishes, the loop returns its stored result; if it failed, nothing was
+                // stored and this request takes its own turn
+                awaitQuietly(running);
+                continue;
+            }
+
+            try {
+                OrderResponse response;
+                try {
+                    response = placeOrder.get();
+                } catch (RuntimeException e) {
+                    // another instance may have committed the same key first (unique constraint)
+                    Optional<OrderResponse> winner = loadFromDatabase(scope, username, key, fingerprint);
+                    if (winner.isPresent()) {
+                        mine.complete(winner.get());
+                        return winner.get();
+                    }
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+                remember(scope, new Completed(fingerprint, response, Instant.now()));
+                mine.complete(response);
+                return response;
+            } finally {
+                inFlight.remove(scope, mine);
+            }
+        }
+    }
+
+    // Result already stored for the key, if any
+    public Optional<OrderResponse> findStored(String username, String key, String fingerprint) {
+        return findCompleted(scope(username, key), username, key, fingerprint);
+    }
+
+    // Stores the result with the order; runs inside the order's transaction
+    public void record(String username, String key, String fingerprint, OrderResponse response) {
+        OrderIdempotencyKey record = new OrderIdempotencyKey();
+        record.setUsername(username);
+        record.setIdempotencyKey(key);
+        record.setFingerprint(fingerprint);
+        record.setOrderId(response.getId());
+        try {
+            record.setResponse(objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store the order response", e);
+        }
+        record.setCreatedAt(Instant.now());
+        repository.saveAndFlush(record);
+    }
+
+    private Optional<OrderResponse> findCompleted(String scope, String username, String key, String fingerprint) {
+        lock.lock();
+        try {
+            Completed entry = completed.get(scope);
+            if (entry != null) {
+                if (!expired(entry.createdAt())) {
+                    return Optional.of(checked(entry, fingerprint));
+                }
+                completed.remove(scope);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return loadFromDatabase(scope, username, key, fingerprint);
+    }
+
+    private Optional<OrderResponse> loadFromDatabase(String scope, String username, String key, String fingerprint) {
+        Optional<OrderIdempotencyKey> found = repository.findByUsernameAndIdempotencyKey(username, key);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        OrderIdempotencyKey record = found.get();
+        if (expired(record.getCreatedAt())) {
+            // not purged yet; drop it now so the key can be recorded again. A bulk delete runs at once,
+            // ahead of the insert that record() flushes when this joins the order's transaction.
+            transactionTemplate.executeWithoutResult(status ->
+                    repository.deleteKeyCreatedBefore(username, key, Instant.now().minus(retention)));
+            return Optional.empty();
+        }
+        Completed entry;
+        try {
+            entry = new Completed(record.getFingerprint(), objectMapper.readValue(record.getResponse(), OrderResponse.class),
+                    record.getCreatedAt());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored order response for key " + key + " is unreadable", e);
+        }
+        remember(scope, entry);
+        return Optional.of(checked(entry, fingerprint));
+    }
+
+    private boolean expired(Instant createdAt) {
+        return createdAt != null && createdAt.isBefore(Instant.now().minus(retention));
+    }
+
+    private static String scope(String username, String key) {
+        return username + '\n' + key;
+    }
+
+    private static OrderResponse checked(Completed entry, String fingerprint) {
+        if (!entry.fingerprint().equals(fingerprint)) {
+            throw new CommonException("Idempotency-Key was already used with a different request", HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        return entry.response();
+    }
+
+    private void remember(String scope, Completed entry) {
+        lock.lock();
+        try {
+            completed.put(scope, entry);
+            if (completed.size() > maxSize) {
+                Map.Entry<String, Completed> eldest = completed.entrySet().iterator().next();
+                completed.remove(eldest.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitQuietly(CompletableFuture<OrderResponse> running) {
+        try {
+            running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // handled by the caller's next lookup
+        } catch (TimeoutException e) {
+            throw new CommonException("A request with this Idempotency-Key is still being processed", HttpStatus.CONFLICT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException("Interrupted while waiting for a request with the same Idempotency-Key",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private record Completed(String fingerprint, OrderResponse response, Instant createdAt) {
+    }
+}
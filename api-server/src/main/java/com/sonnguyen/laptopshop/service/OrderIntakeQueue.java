@@ -0,0 +1,450 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.OrderTicketStatus;
+import com.sonnguyen.laptopshop.payload.request.OrderRequest;
+import com.sonnguyen.laptopshop.payload.request.QueuedOrderRequest;
+import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderTicketResponse;
+import com.sonnguyen.laptopshop.utils.GroupCommit;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Asynchronous order intake: an accepted order is appended to a local log (fsync'd, with concurrent
+// appends sharing one fsync) and a bounded queue, and the client gets a ticket right away. Workers
+// drain the queue in micro-batches, each placed by OrderService.placeBatch in one transaction.
+// Tickets left unfinished in the log are queued again at startup; the ticket's idempotency key
+// keeps an order from being placed twice.
+@Slf4j
+@Service
+public class OrderIntakeQueue {
+
+    private static final String LOG_FILE = "orders.log";
+    private static final long LOG_COMPACT_BYTES = 1024L * 1024;
+    private static final long SUBSCRIPTION_TIMEOUT_MILLIS = 60_000;
+
+    private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final int capacity;
+    private final int batchSize;
+    private final int workerCount;
+    private final Duration ticketRetention;
+    private final Path logPath;
+
+    private final BlockingQueue<Ticket> queue;
+    // bounds queued + in-progress tickets, so a replay after restart always fits in the queue
+    private final Semaphore slots;
+    private final Map<UUID, Ticket> tickets = new ConcurrentHashMap<>();
+    private final Map<UUID, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final Object logLock = new Object();
+    private FileChannel logChannel;
+    private final GroupCommit logSync = new GroupCommit();
+    private ExecutorService workers;
+    private volatile boolean accepting;
+
+    public OrderIntakeQueue(OrderService orderService, ObjectMapper objectMapper,
+                            @Value("${laptopshop.order-intake.capacity:1000}") int capacity,
+                            @Value("${laptopshop.order-intake.batch-size:20}") int batchSize,
+                            @Value("${laptopshop.order-intake.workers:2}") int workerCount,
+                            @Value("${laptopshop.order-intake.ticket-retention:1h}") Duration ticketRetention,
+                            @Value("${laptopshop.order-intake.log-dir:data/order-intake}") String logDir) {
+        this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.capacity = capacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.workerCount = Math.max(1, workerCount);
+        this.ticketRetention = ticketRetention;
+        this.logPath = Paths.get(logDir).resolve(LOG_FILE);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.slots = new Semaphore(capacity);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        Files.createDirectories(logPath.getParent());
+        List<Ticket> unfinished = replayLog();
+        synchronized (logLock) {
+            // keep only what is unfinished
+            compactLocked(unfinished);
+        }
+        for (Ticket ticket : unfinished) {
+            if (!slots.tryAcquire()) {
+                // more than capacity in the log (capacity lowered since): these wait for the next start
+                log.warn("Order intake log holds more tickets than the queue capacity {}", capacity);
+                break;
+            }
+            queue.add(ticket);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount,
+                runnable -> new Thread(runnable, "order-intake-" + threadCount.incrementAndGet()));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::drain);
+        }
+        accepting = true;
+        log.info("Order intake started with {} workers, {} tickets replayed", workerCount, unfinished.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        accepting = false;
+        if (workers != null) {
+            // queued tickets stay in the log and are replayed at the next start
+            workers.shutdownNow();
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        synchronized (logLock) {
+            if (logChannel != null) {
+                logChannel.close();
+            }
+        }
+    }
+
+    public OrderTicketResponse submit(String username, OrderRequest request) {
+        if (!accepting) {
+            throw new CommonException("Order intake is not accepting orders right now", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (request.getCartItems() == null || request.getCartItems().isEmpty()) {
+            throw new CommonException("Cart is empty", HttpStatus.BAD_REQUEST);
+        }
+        boolean invalidLine = request.getCartItems().stream()
+                .anyMatch(item -> item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0);
+        if (invalidLine) {
+            throw new CommonException("Invalid item quantity", HttpStatus.BAD_REQUEST);
+        }
+        if (!slots.tryAcquire()) {
+            throw new CommonException("Too many orders are waiting, please try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        UUID ticketId = UUID.randomUUID();
+        Ticket ticket = new Ticket(ticketId, new QueuedOrderRequest(username, "ticket:" + ticketId, request), Instant.now());
+        // registered under the same lock as the write, so a compaction either sees the ticket or
+        // runs before its line is appended; otherwise it would rewrite the log without it
+        long position;
+        synchronized (logLock) {
+            try {
+                position = write(new LogEntry(ticketId, ticket.acceptedAt, ticket.request, null));
+            } catch (IOException e) {
+                slots.release();
+                log.error("Could not write the order intake log", e);
+                throw new CommonException("Order intake is not accepting orders right now", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            tickets.put(ticketId, ticket);
+        }
+        try {
+            awaitDurable(position);
+        } catch (IOException e) {
+            tickets.remove(ticketId);
+            slots.release();
+            log.error("Could not sync the order intake log", e);
+            throw new CommonException("Order intake is not accepting orders right now", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        queue.add(ticket);
+        return ticket.toResponse();
+    }
+
+    // Tickets are visible to the user who placed them only
+    public OrderTicketResponse getTicket(UUID ticketId, String username) {
+        return findTicket(ticketId, username).toResponse();
+    }
+
+    public SseEmitter subscribe(UUID ticketId, String username) {
+        Ticket ticket = findTicket(ticketId, username);
+        SseEmitter emitter = new SseEmitter(SUBSCRIPTION_TIMEOUT_MILLIS);
+        subscribers.computeIfAbsent(ticketId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable unsubscribe = () -> subscribers.computeIfPresent(ticketId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        // read after registering, so a ticket finishing right now is either seen here or notified
+        send(emitter, ticket.toResponse());
+        return emitter;
+    }
+
+    private Ticket findTicket(UUID ticketId, String username) {
+        Ticket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.request.getUsername().equals(username)) {
+            throw new CommonException("Order ticket not found: " + ticketId, HttpStatus.NOT_FOUND);
+        }
+        return ticket;
+    }
+
+    private void drain() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                process(batch);
+            } catch (Exception e) {
+                // the tickets stay unfinished in the log and are retried after a restart
+                log.error("Order intake batch of {} tickets failed", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Ticket> batch) {
+        batch.forEach(ticket -> ticket.status = OrderTicketStatus.PROCESSING);
+        List<OrderTicketResponse> results;
+        try {
+            results = orderService.placeBatch(batch.stream().map(ticket -> ticket.request).toList());
+        } catch (Exception e) {
+            log.warn("Order intake batch of {} rolled back, placing its tickets one by one: {}", batch.size(), e.getMessage());
+            results = batch.stream().map(this::placeAlone).toList();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            finish(batch.get(i), results.get(i));
+        }
+        sweepFinished();
+    }
+
+    private OrderTicketResponse placeAlone(Ticket ticket) {
+        OrderTicketResponse result = new OrderTicketResponse();
+        try {
+            result.setOrder(orderService.createOrder(ticket.request.getUsername(), ticket.request.getOrder(),
+                    ticket.request.getIdempotencyKey()));
+            result.setOrderId(result.getOrder().getId());
+            result.setStatus(OrderTicketStatus.COMPLETED);
+        } catch (CommonException e) {
+            result.setStatus(OrderTicketStatus.FAILED);
+            result.setMessage(e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Order ticket {} failed", ticket.id, e);
+            result.setStatus(OrderTicketStatus.FAILED);
+            result.setMessage("Order could not be placed");
+        }
+        result.setCompletedAt(Instant.now());
+        return result;
+    }
+
+    private void finish(Ticket ticket, OrderTicketResponse result) {
+        ticket.status = result.getStatus();
+        ticket.orderId = result.getOrderId();
+        ticket.order = result.getOrder();
+        ticket.message = result.getMessage();
+        ticket.completedAt = result.getCompletedAt();
+        try {
+            long position;
+            synchronized (logLock) {
+                position = write(new LogEntry(ticket.id, ticket.completedAt, null, ticket.status));
+            }
+            awaitDurable(position);
+        } catch (IOException e) {
+            // the order is committed with its idempotency key, so a replay finds it instead of placing it again
+            log.error("Could not record completion of order ticket {}", ticket.id, e);
+        }
+        slots.release();
+        notifySubscribers(ticket);
+    }
+
+    private void notifySubscribers(Ticket ticket) {
+        List<SseEmitter> emitters = subscribers.remove(ticket.id);
+        if (emitters == null) {
+            return;
+        }
+        OrderTicketResponse response = ticket.toResponse();
+        for (SseEmitter emitter : emitters) {
+            send(emitter, response);
+            emitter.complete();
+        }
+    }
+
+    private void send(SseEmitter emitter, OrderTicketResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(response));
+            if (response.getStatus().isFinal()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away or the emitter is already complete
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void sweepFinished() {
+        Instant cutoff = Instant.now().minus(ticketRetention);
+        tickets.values().removeIf(ticket -> ticket.status.isFinal() && ticket.completedAt.isBefore(cutoff));
+
+        synchronized (logLock) {
+            try {
+                if (logChannel.size() > LOG_COMPACT_BYTES) {
+                    compactLocked(tickets.values().stream()
+                            .filter(ticket -> !ticket.status.isFinal())
+                            .sorted(Comparator.comparing(ticket -> ticket.acceptedAt))
+                            .toList());
+                }
+            } catch (IOException e) {
+                log.warn("Could not compact the order intake log", e);
+            }
+        }
+    }
+
+    // Appends an entry without syncing and returns its position for awaitDurable; caller holds logLock
+    private long write(LogEntry entry) throws IOException {
+        ByteBuffer line = StandardCharsets.UTF_8.encode(toJson(entry) + "\n");
+        while (line.hasRemaining()) {
+            logChannel.write(line);
+        }
+        return logSync.written();
+    }
+
+    // One fsync covers every entry written before it started
+    private void awaitDurable(long position) throws IOException {
+        try {
+            logSync.await(position, this::forceLog);
+        } catch (IOException e) {
+            synchronized (logLock) {
+                // a compaction finishing meanwhile may have made the entry durable in the new log
+                if (logSync.isSynced(position)) {
+                    return;
+                }
+            }
+            throw e;
+        }
+    }
+
+    // The channel is forced outside logLock, so a compaction can close it underneath; the compaction
+    // forced every unfinished ticket into the new log, so that counts as synced
+    private void forceLog() throws IOException {
+        FileChannel channel;
+        synchronized (logLock) {
+            channel = logChannel;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            synchronized (logLock) {
+                if (logChannel == channel) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private List<Ticket> replayLog() throws IOException {
+        Map<UUID, Ticket> replayed = new LinkedHashMap<>();
+        if (Files.exists(logPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    LogEntry entry;
+                    try {
+                        entry = objectMapper.readValue(line, LogEntry.class);
+                    } catch (JsonProcessingException e) {
+                        log.warn("Skipping torn order intake log line");
+                        continue;
+                    }
+                    if (entry.request() != null) {
+                        replayed.put(entry.ticketId(), new Ticket(entry.ticketId(), entry.request(), entry.at()));
+                    } else {
+                        replayed.remove(entry.ticketId());
+                    }
+                }
+            }
+        }
+        List<Ticket> unfinished = new ArrayList<>(replayed.values());
+        unfinished.forEach(ticket -> tickets.put(ticket.id, ticket));
+        return unfinished;
+    }
+
+    // Rewrites the log with just the given unfinished tickets
+    private void compactLocked(List<Ticket> unfinished) throws IOException {
+        Path next = logPath.resolveSibling(LOG_FILE + ".next");
+        StringBuilder content = new StringBuilder();
+        for (Ticket ticket : unfinished) {
+            content.append(toJson(new LogEntry(ticket.id, ticket.acceptedAt, ticket.request, null))).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(content.toString());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        if (logChannel != null) {
+            logChannel.close();
+        }
+        Files.move(next, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // what the old log held and still matters is in the forced new one
+        logSync.markSynced();
+    }
+
+    private String toJson(LogEntry entry) {
+        try {
+            return objectMapper.writeValueAsString(entry);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize an order intake log entry", e);
+        }
+    }
+
+    // An accepted ticket carries its request; a finished one only its final status
+    private record LogEntry(UUID ticketId, Instant at, QueuedOrderRequest request, OrderTicketStatus status) {
+    }
+
+    private static final class Ticket {
+        private final UUID id;
+        private final QueuedOrderRequest request;
+        private final Instant acceptedAt;
+        private volatile OrderTicketStatus status = OrderTicketStatus.QUEUED;
+        private volatile Long orderId;
+        private volatile OrderResponse order;
+        private volatile String message;
+        private volatile Instant completedAt;
+
+        Ticket(UUID id, QueuedOrderRequest request, Instant acceptedAt) {
+            this.id = id;
+            this.request = request;
+            this.acceptedAt = acceptedAt;
+        }
+
+        OrderTicketResponse toResponse() {
+            OrderTicketResponse response = new OrderTicketResponse();
+            response.setTicketId(id);
+            response.setStatus(status);
+            response.setOrderId(orderId);
+            response.setOrder(order);
+            response.setMessage(message);
+            response.setAcceptedAt(acceptedAt);
+            response.setCompletedAt(completedAt);
+            return response;
+        }
+    }
+}
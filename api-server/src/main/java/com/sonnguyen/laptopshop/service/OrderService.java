@@ -1,21 +1,43 @@
 package com.sonnguyen.laptopshop.service;
 
+import com.sonnguyen.laptopshop.event.OrderPlacedEvent;
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
 import com.sonnguyen.laptopshop.model.*;
 import com.sonnguyen.laptopshop.payload.request.CartItemRequest;
 import com.sonnguyen.laptopshop.payload.request.OrderRequest;
+import com.sonnguyen.laptopshop.payload.request.QueuedOrderRequest;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
 import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderTicketResponse;
 import com.sonnguyen.laptopshop.repository.*;
+import com.sonnguyen.laptopshop.utils.KeysetCursor;
 import com.sonnguyen.laptopshop.utils.ModelMapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.http.HttpStatus;
 import com.sonnguyen.laptopshop.exception.CommonException;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -23,77 +45,196 @@ public class OrderService {
 
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final ArchivedOrderDetailRepository archivedOrderDetailRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InventoryService inventoryService;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderIdempotencyStore idempotencyStore;
+    private final CouponEngine couponEngine;
 
     public OrderService(OrderRepository orderRepository, OrderDetailRepository orderDetailRepository,
-                       ProductRepository productRepository, UserRepository userRepository) {
+                       ArchivedOrderRepository archivedOrderRepository,
+                       ArchivedOrderDetailRepository archivedOrderDetailRepository,
+                       ProductRepository productRepository, UserRepository userRepository,
+                       ApplicationEventPublisher eventPublisher, InventoryService inventoryService,
+                       TransactionTemplate transactionTemplate, OrderIdempotencyStore idempotencyStore,
+                       CouponEngine couponEngine) {
         this.orderRepository = orderRepository;
         this.orderDetailRepository = orderDetailRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.archivedOrderDetailRepository = archivedOrderDetailRepository;
         this.productRepository = productRepository;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.inventoryService = inventoryService;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencyStore = idempotencyStore;
+        this.couponEngine = couponEngine;
     }
 
+    // Runs outside the class-level transaction so a checkout that loses a lock conflict can be
+    // retried as a whole in a fresh one
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public OrderResponse createOrder(String username, OrderRequest request) {
+        return createOrder(username, request, response -> {
+        });
+    }
+
+    // With an Idempotency-Key, a repeated request returns the first order instead of placing another
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OrderResponse createOrder(String username, OrderRequest request, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return createOrder(username, request);
+        }
+        String fingerprint = idempotencyStore.fingerprint(request);
+        return idempotencyStore.execute(username, idempotencyKey, fingerprint, () -> createOrder(username, request,
+                response -> idempotencyStore.record(username, idempotencyKey, fingerprint, response)));
+    }
+
+    // beforeCommit runs inside the order's transaction once the order is written
+    private OrderResponse createOrder(String username, OrderRequest request, Consumer<OrderResponse> beforeCommit) {
         try {
-            User user = userRepository.findByUsername(username);
-            if (user == null) {
-                throw new CommonException("User not found", HttpStatus.NOT_FOUND);
-            }
+            return inventoryService.retrying(() -> transactionTemplate.execute(status -> {
+                OrderResponse response = placeOrder(username, request);
+                beforeCommit.accept(response);
+                return response;
+            }));
+        } catch (CommonException ce) {
+            // rethrow CommonException as-is
+            throw ce;
+        } catch (ConcurrencyFailureException e) {
+            throw new CommonException("Too many concurrent orders for these products, please try again", HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            // Unexpected exception -> wrap to provide clearer HTTP 500 (the transaction is already rolled back)
+            throw new CommonException("Failed to create order: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            if (request.getCartItems() == null || request.getCartItems().isEmpty()) {
-                throw new CommonException("Cart is empty", HttpStatus.BAD_REQUEST);
+    // Places queued orders in one transaction. An order rejected with a CommonException has written
+    // nothing (see placeOrder) and fails alone; any other error rolls the whole batch back and is
+    // thrown, and the caller places those orders one by one. Results are in the order of the input.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<OrderTicketResponse> placeBatch(List<QueuedOrderRequest> orders) {
+        return transactionTemplate.execute(status -> {
+            List<OrderTicketResponse> results = new ArrayList<>(orders.size());
+            for (QueuedOrderRequest queued : orders) {
+                String fingerprint = idempotencyStore.fingerprint(queued.getOrder());
+                // a ticket replayed after a crash may already have been placed
+                Optional<OrderResponse> stored = idempotencyStore.findStored(queued.getUsername(), queued.getIdempotencyKey(), fingerprint);
+                if (stored.isPresent()) {
+                    results.add(ticketResult(stored.get(), null));
+                    continue;
+                }
+                try {
+                    OrderResponse response = placeOrder(queued.getUsername(), queued.getOrder());
+                    idempotencyStore.record(queued.getUsername(), queued.getIdempotencyKey(), fingerprint, response);
+                    results.add(ticketResult(response, null));
+                } catch (CommonException e) {
+                    results.add(ticketResult(null, e.getMessage()));
+                }
             }
+            return results;
+        });
+    }
 
-            Order order = new Order();
-            order.setUser(user);
-            order.setReceiverName(request.getReceiverName());
-            order.setReceiverAddress(request.getReceiverAddress());
-            order.setReceiverPhone(request.getReceiverPhone());
-            order.setStatus("PENDING");
-            order.setTotalPrice(0.0);
+    private static OrderTicketResponse ticketResult(OrderResponse order, String failure) {
+        OrderTicketResponse result = new OrderTicketResponse();
+        result.setStatus(order != null ? OrderTicketStatus.COMPLETED : OrderTicketStatus.FAILED);
+        if (order != null) {
+            result.setOrderId(order.getId());
+            result.setOrder(order);
+        }
+        result.setMessage(failure);
+        result.setCompletedAt(Instant.now());
+        return result;
+    }
 
-            Order savedOrder = orderRepository.save(order);
+    // Every CommonException is raised before this order writes anything: the checks come first,
+    // reserve() undoes its own lines when one is short, and a rejected coupon puts the stock back
+    private OrderResponse placeOrder(String username, OrderRequest request) {
+        User user = userRepository.findByUsername(username);
+        if (user == null) {
+            throw new CommonException("User not found", HttpStatus.NOT_FOUND);
+        }
 
-            double totalPrice = 0.0;
-            for (CartItemRequest item : request.getCartItems()) {
-                if (item.getQuantity() == null || item.getQuantity() <= 0) {
-                    throw new CommonException("Invalid item quantity", HttpStatus.BAD_REQUEST);
-                }
+        if (request.getCartItems() == null || request.getCartItems().isEmpty()) {
+            throw new CommonException("Cart is empty", HttpStatus.BAD_REQUEST);
+        }
 
-                Product product = productRepository.findById(item.getProductId())
-                        .orElseThrow(() -> new CommonException("Product not found", HttpStatus.NOT_FOUND));
+        Map<Long, Long> quantities = new LinkedHashMap<>();
+        for (CartItemRequest item : request.getCartItems()) {
+            if (item.getProductId() == null) {
+                throw new CommonException("Product not found", HttpStatus.NOT_FOUND);
+            }
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new CommonException("Invalid item quantity", HttpStatus.BAD_REQUEST);
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Long::sum);
+        }
 
-                if (product.getQuantity() < item.getQuantity()) {
-                    throw new CommonException("Insufficient product quantity for product: " + product.getName(), HttpStatus.BAD_REQUEST);
-                }
+        // Take the stock first, before anything is read: rows are locked in ascending id order, and
+        // the products loaded below already carry the decremented quantity and sold count
+        inventoryService.reserve(quantities);
 
-                OrderDetail orderDetail = new OrderDetail();
-                orderDetail.setOrder(savedOrder);
-                orderDetail.setProduct(product);
-                orderDetail.setQuantity(item.getQuantity());
-                orderDetail.setPrice(product.getPrice());
-                orderDetailRepository.save(orderDetail);
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
 
-                // Update product quantity and sold count
-                product.setQuantity(product.getQuantity() - item.getQuantity());
-                product.setSold(product.getSold() + item.getQuantity());
-                productRepository.save(product);
+        Order order = new Order();
+        order.setUser(user);
+        order.setReceiverName(request.getReceiverName());
+        order.setReceiverAddress(request.getReceiverAddress());
+        order.setReceiverPhone(request.getReceiverPhone());
+        order.setStatus(OrderStatus.PENDING.name());
 
-                totalPrice += item.getQuantity() * product.getPrice();
+        List<OrderDetail> orderDetails = new ArrayList<>(request.getCartItems().size());
+        double totalPrice = 0.0;
+        for (CartItemRequest item : request.getCartItems()) {
+            Product product = products.get(item.getProductId());
+            if (product == null) {
+                throw new CommonException("Product not found", HttpStatus.NOT_FOUND);
             }
 
-            savedOrder.setTotalPrice(totalPrice);
-            Order finalOrder = orderRepository.save(savedOrder);
+            OrderDetail orderDetail = new OrderDetail();
+            orderDetail.setOrder(order);
+            orderDetail.setProduct(product);
+            orderDetail.setQuantity(item.getQuantity());
+            orderDetail.setPrice(product.getPrice());
+            orderDetails.add(orderDetail);
 
-            return ModelMapper.toOrderResponse(finalOrder);
-        } catch (CommonException ce) {
-            // rethrow CommonException as-is
-            throw ce;
-        } catch (Exception e) {
-            // Unexpected exception -> wrap to provide clearer HTTP 500 + trigger rollback
-            throw new CommonException("Failed to create order: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            totalPrice += item.getQuantity() * product.getPrice();
+        }
+
+        CouponEngine.Redemption redemption = null;
+        if (request.getCouponCode() != null && !request.getCouponCode().isBlank()) {
+            try {
+                redemption = couponEngine.redeem(request.getCouponCode(), user.getId(), totalPrice);
+            } catch (CommonException e) {
+                inventoryService.release(quantities);
+                throw e;
+            }
+            order.setCouponCode(redemption.code());
+            order.setDiscountAmount(redemption.discount());
+            totalPrice -= redemption.discount();
+        }
+        order.setTotalPrice(totalPrice);
+
+        // one INSERT for the order and one batch for its lines; the lines are kept off the managed
+        // order, whose cascade would otherwise insert them one by one at flush
+        Order savedOrder = orderRepository.save(order);
+        orderDetailRepository.insertAll(orderDetails);
+        if (redemption != null) {
+            couponEngine.record(redemption, savedOrder.getId());
         }
+
+        eventPublisher.publishEvent(ProductChangedEvent.stockChanged(quantities.keySet()));
+        eventPublisher.publishEvent(new OrderPlacedEvent(savedOrder.getId(), savedOrder.getOrderDate(), quantities));
+
+        OrderResponse response = ModelMapper.toOrderResponse(savedOrder);
+        response.setOrderDetails(orderDetails.stream().map(ModelMapper::toOrderDetailResponse).toList());
+        return response;
     }
 
     public Page<OrderResponse> getOrdersByUserId(String username, Pageable pageable) {
@@ -102,8 +243,32 @@ public class OrderService {
             throw new RuntimeException("User not found");
         }
 
-        // Convert to page manually since we don't have a pageable method
-        return Page.empty(pageable);
+        Page<Order> orders = orderRepository.findAll(ordersOf(user, null), pageable);
+        Map<Long, List<OrderDetail>> details = loadDetails(orders.getContent());
+        return orders.map(order -> ModelMapper.toOrderResponse(order, details.getOrDefault(order.getId(), List.of())));
+    }
+
+    // A customer's orders, newest first by default, one keyset page at a time: one query for the
+    // page of orders and one for their lines with products and categories. Archived orders are
+    // only read when asked for.
+    @Transactional(readOnly = true)
+    public CursorPageResponse<OrderResponse> getOrderHistory(String username, String status, Sort sort, String cursor, int size,
+                                                             boolean includeArchived) {
+        KeysetCursor.checkSize(size);
+        User user = userRepository.findByUsername(username);
+        if (user == null) {
+            throw new CommonException("User not found", HttpStatus.NOT_FOUND);
+        }
+        if (includeArchived) {
+            return scrollWithArchive(ordersOf(user, status), ordersOf(user, status), sort, cursor, size);
+        }
+
+        List<Order> rows = orderRepository.findBy(KeysetCursor.<Order>after(cursor, sort).and(ordersOf(user, status)),
+                query -> query.sortBy(sort).limit(size + 1).all());
+        Map<Long, List<OrderDetail>> details = loadDetails(rows);
+        return KeysetCursor.toResponse(rows.stream()
+                .map(order -> ModelMapper.toOrderResponse(order, details.getOrDefault(order.getId(), List.of())))
+                .toList(), size, sort);
     }
 
     public List<OrderResponse> getUserOrders(String username) {
@@ -113,14 +278,86 @@ public class OrderService {
         }
 
         List<Order> orders = orderRepository.findByUser(user);
+        Map<Long, List<OrderDetail>> details = loadDetails(orders);
         return orders.stream()
-                .map(ModelMapper::toOrderResponse)
+                .map(order -> ModelMapper.toOrderResponse(order, details.getOrDefault(order.getId(), List.of())))
                 .toList();
     }
 
-    public Optional<OrderResponse> getOrderById(Long orderId) {
-        return orderRepository.findById(orderId)
+    // Matches Order and ArchivedOrder alike
+    private static <T> Specification<T> ordersOf(User user, String status) {
+        Specification<T> spec = (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("user").get("id"), user.getId());
+        return spec.and(withStatus(status));
+    }
+
+    private static <T> Specification<T> withStatus(String status) {
+        return status != null && !status.isEmpty()
+                ? (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("status"), status)
+                : Specification.where(null);
+    }
+
+    // Both tables are scrolled from the same position and the first size rows of the two results
+    // together make the page
+    private CursorPageResponse<OrderResponse> scrollWithArchive(Specification<Order> liveSpec, Specification<ArchivedOrder> archivedSpec,
+                                                                Sort sort, String cursor, int size) {
+        List<Order> live = orderRepository.findBy(KeysetCursor.<Order>after(cursor, sort).and(liveSpec),
+                query -> query.sortBy(sort).limit(size + 1).all());
+        List<ArchivedOrder> archived = archivedOrderRepository.findBy(KeysetCursor.<ArchivedOrder>after(cursor, sort).and(archivedSpec),
+                query -> query.sortBy(sort).limit(size + 1).all());
+        Map<Long, List<OrderDetail>> liveDetails = loadDetails(live);
+        Map<Long, List<ArchivedOrderDetail>> archivedDetails = loadArchivedDetails(archived);
+        List<OrderResponse> merged = Stream.concat(
+                        live.stream().map(order -> ModelMapper.toOrderResponse(order, liveDetails.getOrDefault(order.getId(), List.of()))),
+                        archived.stream().map(order -> ModelMapper.toOrderResponse(order, archivedDetails.getOrDefault(order.getId(), List.of()))))
+                .sorted(comparator(sort))
+                .toList();
+        return KeysetCursor.toResponse(merged, size, sort);
+    }
+
+    // Orders responses the way the database sorted the rows; sort properties are ORDER sort fields,
+    // which OrderResponse has too
+    @SuppressWarnings("unchecked")
+    private static Comparator<OrderResponse> comparator(Sort sort) {
+        Comparator<OrderResponse> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<OrderResponse> byProperty = Comparator.comparing(
+                    response -> (Comparable<Object>) new BeanWrapperImpl(response).getPropertyValue(order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    // orderId -> lines, in id order
+    private Map<Long, List<OrderDetail>> loadDetails(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> orderIds = orders.stream().map(Order::getId).toList();
+        return orderDetailRepository.findByOrderIdIn(orderIds).stream()
+                .sorted(Comparator.comparing(OrderDetail::getId))
+                .collect(Collectors.groupingBy(detail -> detail.getOrder().getId()));
+    }
+
+    // orderId -> lines of archived orders, in id order
+    private Map<Long, List<ArchivedOrderDetail>> loadArchivedDetails(List<ArchivedOrder> orders) {
+        if (orders.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> orderIds = orders.stream().map(ArchivedOrder::getId).toList();
+        return archivedOrderDetailRepository.findByOrderIdIn(orderIds).stream()
+                .sorted(Comparator.comparing(ArchivedOrderDetail::getId))
+                .collect(Collectors.groupingBy(detail -> detail.getOrder().getId()));
+    }
+
+    public Optional<OrderResponse> getOrderById(Long orderId, boolean includeArchived) {
+        Optional<OrderResponse> live = orderRepository.findById(orderId)
                 .map(ModelMapper::toOrderResponse);
+        if (live.isPresent() || !includeArchived) {
+            return live;
+        }
+        return archivedOrderRepository.findById(orderId)
+                .map(order -> ModelMapper.toOrderResponse(order, archivedOrderDetailRepository.findByOrderIdIn(List.of(orderId))));
     }
 
     public Page<OrderResponse> getAllOrders(Pageable pageable) {
@@ -128,11 +365,17 @@ public class OrderService {
         return orders.map(ModelMapper::toOrderResponse);
     }
 
-    public List<OrderResponse> getAllOrdersWithoutPagination() {
-        List<Order> orders = orderRepository.findAll();
-        return orders.stream()
-                .map(ModelMapper::toOrderResponse)
-                .toList();
+    public CursorPageResponse<OrderResponse> scrollOrders(String status, Sort sort, String cursor, int size, boolean includeArchived) {
+        KeysetCursor.checkSize(size);
+        if (includeArchived) {
+            return scrollWithArchive(withStatus(status), withStatus(status), sort, cursor, size);
+        }
+        List<Order> rows = orderRepository.findBy(KeysetCursor.<Order>after(cursor, sort).and(withStatus(status)),
+                query -> query.sortBy(sort).limit(size + 1).all());
+        Map<Long, List<OrderDetail>> details = loadDetails(rows);
+        return KeysetCursor.toResponse(rows.stream()
+                .map(order -> ModelMapper.toOrderResponse(order, details.getOrDefault(order.getId(), List.of())))
+                .toList(), size, sort);
     }
 
     public Page<OrderResponse> getOrdersByStatus(String status, Pageable pageable) {
@@ -140,24 +383,24 @@ public class OrderService {
         return orders.map(ModelMapper::toOrderResponse);
     }
 
-    public Optional<OrderResponse> updateOrderStatus(Long orderId, String status) {
-        return orderRepository.findById(orderId)
-                .map(order -> {
-                    order.setStatus(status);
-                    return orderRepository.save(order);
-                })
-                .map(ModelMapper::toOrderResponse);
-    }
-
-    public List<OrderResponse> getUserOrdersByStatus(String username, String status) {
+    public List<OrderResponse> getUserOrdersByStatus(String username, String status, boolean includeArchived) {
         User user = userRepository.findByUsername(username);
         if (user == null) {
             throw new RuntimeException("User not found");
         }
 
         List<Order> orders = orderRepository.findByUserAndStatus(user, status);
-        return orders.stream()
-                .map(ModelMapper::toOrderResponse)
+        Map<Long, List<OrderDetail>> details = loadDetails(orders);
+        List<OrderResponse> responses = orders.stream()
+                .map(order -> ModelMapper.toOrderResponse(order, details.getOrDefault(order.getId(), List.of())))
+                .toList();
+        if (!includeArchived) {
+            return responses;
+        }
+        List<ArchivedOrder> archived = archivedOrderRepository.findByUserAndStatus(user, status);
+        Map<Long, List<ArchivedOrderDetail>> archivedDetails = loadArchivedDetails(archived);
+        return Stream.concat(responses.stream(), archived.stream()
+                        .map(order -> ModelMapper.toOrderResponse(order, archivedDetails.getOrDefault(order.getId(), List.of()))))
                 .toList();
     }
 }
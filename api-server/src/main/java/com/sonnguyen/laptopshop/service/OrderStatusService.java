@@ -0,0 +1,141 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.OrderStatusChangedEvent;
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.event.SalesReturnedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.payload.request.OrderStatusTransitionRequest;
+import com.sonnguyen.laptopshop.payload.response.OrderResponse;
+import com.sonnguyen.laptopshop.payload.response.OrderStatusTransitionResponse;
+import com.sonnguyen.laptopshop.repository.OrderDetailRepository;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import com.sonnguyen.laptopshop.utils.ModelMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+
+// Order status changes following the OrderStatus transitions, applied as set-based statements in
+// batches of up to BATCH_SIZE orders per transaction. Each batch locks its orders, moves those still
+// in an allowed status with one UPDATE, and puts the stock of cancelled orders back in one pass.
+@Service
+@RequiredArgsConstructor
+public class OrderStatusService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final OrderRepository orderRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final InventoryService inventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    // Empty when the order does not exist; 409 when it can't move to status from where it is
+    public Optional<OrderResponse> updateStatus(Long orderId, String status) {
+        OrderStatus target = parseTarget(status);
+        Map<Long, String> changed = applyBatch(List.of(orderId), OrderStatus.sourcesOf(target), target);
+        return transactionTemplate.execute(tx -> orderRepository.findById(orderId).map(order -> {
+            if (changed.isEmpty() && !target.name().equals(order.getStatus())) {
+                throw new CommonException("Order " + orderId + " can't move from " + order.getStatus() + " to " + target,
+                        HttpStatus.CONFLICT);
+            }
+            return ModelMapper.toOrderResponse(order);
+        }));
+    }
+
+    public OrderStatusTransitionResponse transition(OrderStatusTransitionRequest request) {
+        OrderStatus target = parseTarget(request.getStatus());
+        boolean hasIds = request.getIds() != null && !request.getIds().isEmpty();
+        if (hasIds == (request.getFilter() != null)) {
+            throw new CommonException("Provide either ids or filter", HttpStatus.BAD_REQUEST);
+        }
+
+        if (hasIds) {
+            List<Long> ids = request.getIds().stream().filter(Objects::nonNull).distinct().toList();
+            Set<OrderStatus> sources = OrderStatus.sourcesOf(target);
+            Set<Long> applied = new HashSet<>();
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                applied.addAll(applyBatch(ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE)), sources, target).keySet());
+            }
+            List<Long> rejectedIds = ids.stream().filter(id -> !applied.contains(id)).toList();
+            return new OrderStatusTransitionResponse(target.name(), applied.size(), rejectedIds.size(), rejectedIds);
+        }
+
+        OrderStatus source = OrderStatus.parse(request.getFilter().getStatus())
+                .orElseThrow(() -> new CommonException("filter.status must be one of " + Arrays.toString(OrderStatus.values()),
+                        HttpStatus.BAD_REQUEST));
+        if (!source.canTransitionTo(target)) {
+            throw new CommonException("Orders can't move from " + source + " to " + target, HttpStatus.BAD_REQUEST);
+        }
+        // walks the matching ids in order; a batch only moves orders still in the source status, so
+        // orders changed meanwhile by someone else are left alone
+        int applied = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> batch = orderRepository.findIdsByStatusAfter(source.name(), afterId,
+                    request.getFilter().getOrderedBefore(), PageRequest.of(0, BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            afterId = batch.get(batch.size() - 1);
+            applied += applyBatch(batch, EnumSet.of(source), target).size();
+        }
+        return new OrderStatusTransitionResponse(target.name(), applied, 0, List.of());
+    }
+
+    // One transaction, retried as a whole when it loses a lock conflict. Returns the orders moved,
+    // with the status each one left.
+    private Map<Long, String> applyBatch(List<Long> ids, Set<OrderStatus> sources, OrderStatus target) {
+        List<String> sourceNames = sources.stream().map(OrderStatus::name).toList();
+        if (sourceNames.isEmpty()) {
+            return Map.of();
+        }
+        return inventoryService.retrying(() -> transactionTemplate.execute(tx -> {
+            Map<Long, String> previous = new LinkedHashMap<>();
+            Map<Long, Double> totalPrices = new HashMap<>();
+            for (Object[] row : orderRepository.lockStatuses(ids, sourceNames)) {
+                long id = ((Number) row[0]).longValue();
+                previous.put(id, (String) row[1]);
+                totalPrices.put(id, ((Number) row[2]).doubleValue());
+            }
+            if (previous.isEmpty()) {
+                return previous;
+            }
+            orderRepository.updateStatus(previous.keySet(), target.name(), Instant.now());
+            if (target == OrderStatus.CANCELLED) {
+                releaseStock(previous.keySet());
+            }
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(target.name(), previous, totalPrices));
+            return previous;
+        }));
+    }
+
+    // Units of all lines of the cancelled orders, summed per product and put back with one
+    // statement per product; the lines themselves go out as returned sales
+    private void releaseStock(Collection<Long> orderIds) {
+        Map<Long, Long> quantities = new HashMap<>();
+        List<SalesReturnedEvent.Line> lines = new ArrayList<>();
+        for (Object[] row : orderDetailRepository.findSoldLinesForOrders(orderIds)) {
+            long quantity = row[2] != null ? ((Number) row[2]).longValue() : 0;
+            quantities.merge((Long) row[0], quantity, Long::sum);
+            lines.add(new SalesReturnedEvent.Line((Long) row[0], (Instant) row[1], quantity));
+        }
+        if (!quantities.isEmpty()) {
+            inventoryService.release(quantities);
+            eventPublisher.publishEvent(ProductChangedEvent.stockChanged(quantities.keySet()));
+            eventPublisher.publishEvent(new SalesReturnedEvent(orderIds, lines));
+        }
+    }
+
+    private static OrderStatus parseTarget(String status) {
+        return OrderStatus.parse(status)
+                .orElseThrow(() -> new CommonException("status must be one of " + Arrays.toString(OrderStatus.values()),
+                        HttpStatus.BAD_REQUEST));
+    }
+}
@@ -0,0 +1,136 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.request.ProductBulkRequest;
+import com.sonnguyen.laptopshop.payload.request.ProductFilterRequest;
+import com.sonnguyen.laptopshop.payload.response.BulkOperationResponse;
+import com.sonnguyen.laptopshop.repository.*;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Admin operations over many products as set-based statements. Related rows are removed explicitly
+// instead of through JPA cascades, and in-memory views are refreshed through ProductChangedEvent.
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class ProductBulkService {
+
+    // keeps IN lists at a size MySQL plans well
+    private static final int BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final CartRepository cartRepository;
+    private final CartDetailRepository cartDetailRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ArchivedOrderDetailRepository archivedOrderDetailRepository;
+    private final ReviewRepository reviewRepository;
+    private final WishlistRepository wishlistRepository;
+    private final InventoryService inventoryService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Deletes the products with their cart lines, order lines (live and archived), reviews and wishlist entries,
+    // which is what the Product cascades and foreign keys require
+    public BulkOperationResponse delete(ProductBulkRequest request) {
+        List<Long> ids = resolveTargets(request);
+        int deleted = 0;
+        for (List<Long> batch : partition(ids)) {
+            List<Long> cartIds = cartDetailRepository.findCartIdsByProductIdIn(batch);
+            cartDetailRepository.deleteByProductIdIn(batch);
+            orderDetailRepository.deleteByProductIdIn(batch);
+            archivedOrderDetailRepository.deleteByProductIdIn(batch);
+            reviewRepository.deleteByProductIdIn(batch);
+            wishlistRepository.deleteByProductIdIn(batch);
+            deleted += productRepository.deleteByIdIn(batch);
+            if (!cartIds.isEmpty()) {
+                cartRepository.recalculateSums(cartIds);
+            }
+        }
+        if (!ids.isEmpty()) {
+            eventPublisher.publishEvent(ProductChangedEvent.deleted(ids));
+        }
+        return new BulkOperationResponse(ids.size(), deleted);
+    }
+
+    public BulkOperationResponse changePrice(ProductBulkRequest request) {
+        if (request.getPercent() == null || request.getPercent() <= -100) {
+            throw new CommonException("percent is required and must be greater than -100", HttpStatus.BAD_REQUEST);
+        }
+        double factor = 1 + request.getPercent() / 100;
+        List<Long> ids = resolveTargets(request);
+        int updated = 0;
+        for (List<Long> batch : partition(ids)) {
+            updated += productRepository.scalePrices(batch, factor);
+            // search, facet and snapshot views index the price, so they get the reloaded rows
+            List<Product> changed = productRepository.findAllById(batch);
+            if (!changed.isEmpty()) {
+                eventPublisher.publishEvent(ProductChangedEvent.saved(changed));
+            }
+        }
+        return new BulkOperationResponse(ids.size(), updated);
+    }
+
+    public BulkOperationResponse adjustStock(ProductBulkRequest request) {
+        if (request.getDelta() == null || request.getDelta() == 0) {
+            throw new CommonException("delta is required and must not be 0", HttpStatus.BAD_REQUEST);
+        }
+        List<Long> ids = resolveTargets(request);
+        List<Long> heldInMemory = ids.stream().filter(inventoryService::isHeldInMemory).toList();
+        if (!heldInMemory.isEmpty()) {
+            throw new CommonException("Stock of products " + heldInMemory + " is held in flash-sale mode and can't be adjusted",
+                    HttpStatus.CONFLICT);
+        }
+        int updated = 0;
+        for (List<Long> batch : partition(ids)) {
+            updated += productRepository.adjustQuantities(batch, request.getDelta());
+        }
+        if (!ids.isEmpty()) {
+            eventPublisher.publishEvent(ProductChangedEvent.stockChanged(ids));
+        }
+        return new BulkOperationResponse(ids.size(), updated);
+    }
+
+    private List<Long> resolveTargets(ProductBulkRequest request) {
+        boolean hasIds = request.getIds() != null && !request.getIds().isEmpty();
+        boolean hasFilter = request.getFilter() != null;
+        if ((hasIds ? 1 : 0) + (hasFilter ? 1 : 0) + (request.isAll() ? 1 : 0) != 1) {
+            throw new CommonException("Provide exactly one of ids, filter or all", HttpStatus.BAD_REQUEST);
+        }
+        if (hasIds) {
+            return request.getIds().stream().distinct().toList();
+        }
+        if (request.isAll()) {
+            return productRepository.findIds(null);
+        }
+        // an empty filter matches the whole catalog, which has to be asked for with all instead
+        if (!hasCriteria(request.getFilter())) {
+            throw new CommonException("filter must have at least one criterion; use all to target every product",
+                    HttpStatus.BAD_REQUEST);
+        }
+        return productRepository.findIds(ProductSpecification.matching(request.getFilter()));
+    }
+
+    private static boolean hasCriteria(ProductFilterRequest filter) {
+        return (filter.getFactories() != null && !filter.getFactories().isEmpty())
+                || (filter.getTargets() != null && !filter.getTargets().isEmpty())
+                || (filter.getCategoryIds() != null && !filter.getCategoryIds().isEmpty())
+                || filter.getMinPrice() != null
+                || filter.getMaxPrice() != null
+                || (filter.getKeyword() != null && !filter.getKeyword().isEmpty());
+    }
+
+    private static List<List<Long>> partition(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE)));
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,161 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// Bounded read-through cache of product details, evicting by size (approximate LRU) and TTL.
+// Entries are invalidated from ProductChangedEvent once the writing transaction has committed.
+// Reads take no lock. A miss parks a placeholder under the key while it loads and only swaps the
+// loaded value in if the placeholder is still there, so an invalidation of that key in the meantime
+// keeps a stale load out of the cache without affecting loads of other keys.
+@Component
+public class ProductCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${laptopshop.product-cache.max-size:10000}") int maxSize,
+                        @Value("${laptopshop.product-cache.ttl:10m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+
+        this.hits = Counter.builder("laptopshop.product.cache.gets").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("laptopshop.product.cache.gets").tag("result", "miss").register(meterRegistry);
+        this.sizeEvictions = Counter.builder("laptopshop.product.cache.evictions").tag("cause", "size").register(meterRegistry);
+        this.expiredEvictions = Counter.builder("laptopshop.product.cache.evictions").tag("cause", "expired").register(meterRegistry);
+        this.invalidations = Counter.builder("laptopshop.product.cache.invalidations").register(meterRegistry);
+        Gauge.builder("laptopshop.product.cache.size", this, ProductCache::size).register(meterRegistry);
+    }
+
+    // Returns the cached product or loads it; a null result from the loader is not cached
+    public ProductResponse get(Long id, Function<Long, ProductResponse> loader) {
+        Entry entry = entries.get(id);
+        if (entry != null && !entry.isLoading()) {
+            long now = System.nanoTime();
+            if (entry.expiresAt - now > 0) {
+                entry.lastUsed = now;
+                hits.increment();
+                return entry.value;
+            }
+            if (entries.remove(id, entry)) {
+                expiredEvictions.increment();
+            }
+        }
+
+        misses.increment();
+        Entry loading = Entry.loading();
+        // a concurrent load of the same key owns the slot; this one just does not cache its result
+        boolean owner = entries.putIfAbsent(id, loading) == null;
+        ProductResponse value = null;
+        try {
+            value = loader.apply(id);
+        } finally {
+            if (owner && (value == null || !entries.replace(id, loading, new Entry(value, System.nanoTime() + ttlNanos)))) {
+                entries.remove(id, loading);
+            }
+        }
+        if (owner && value != null && entries.size() > maxSize) {
+            evictOverflow();
+        }
+        return value;
+    }
+
+    public void invalidate(Collection<Long> ids) {
+        for (Long id : ids) {
+            Entry removed = entries.remove(id);
+            if (removed != null && !removed.isLoading()) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        invalidate(entries.keySet());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.getProductIds());
+    }
+
+    // Drops the least recently used tenth in one pass, so a full cache is not scanned on every miss
+    private void evictOverflow() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // lastUsed is read once per entry, as it keeps moving while the candidates are sorted
+            List<Candidate> loaded = new ArrayList<>(entries.size());
+            for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+                if (!entry.getValue().isLoading()) {
+                    loaded.add(new Candidate(entry.getKey(), entry.getValue(), entry.getValue().lastUsed));
+                }
+            }
+            int excess = loaded.size() - (maxSize - maxSize / 10);
+            if (excess <= 0) {
+                return;
+            }
+            loaded.sort(Comparator.comparingLong(Candidate::lastUsed));
+            for (Candidate eldest : loaded.subList(0, excess)) {
+                if (entries.remove(eldest.id(), eldest.entry())) {
+                    sizeEvictions.increment();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private record Candidate(Long id, Entry entry, long lastUsed) {
+    }
+
+    private static final class Entry {
+        private final ProductResponse value;
+        private final long expiresAt;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Entry(ProductResponse value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        static Entry loading() {
+            return new Entry(null, 0);
+        }
+
+        boolean isLoading() {
+            return value == null;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.request.ProductFilterRequest;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Bitset facet indexes over the catalog: one BitSet of product ordinals per factory, target and
+// category value. Counts for a filter are computed with bitset intersections instead of GROUP BYs.
+@Slf4j
+@Component
+public class ProductFacetIndex {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ProductRepository productRepository;
+    @Getter
+    private final double[] priceBucketBounds;
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private int size;
+
+    // per-ordinal values, kept so a product can be removed from its bitsets when it changes
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] factories = new String[INITIAL_CAPACITY];
+    private String[] targets = new String[INITIAL_CAPACITY];
+    private Long[] categoryIds = new Long[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+
+    private final Map<String, BitSet> factoryIndex = new HashMap<>();
+    private final Map<String, BitSet> targetIndex = new HashMap<>();
+    private final Map<Long, BitSet> categoryIndex = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public ProductFacetIndex(ProductRepository productRepository,
+                             @Value("${laptopshop.facets.price-buckets:10000000,15000000,20000000,30000000,40000000}") double[] priceBucketBounds) {
+        this.productRepository = productRepository;
+        this.priceBucketBounds = priceBucketBounds.clone();
+        Arrays.sort(this.priceBucketBounds);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        Pageable pageable = PageRequest.of(0, BUILD_BATCH_SIZE, Sort.by("id"));
+        Page<Product> batch;
+        do {
+            batch = productRepository.findAll(pageable);
+            lock.writeLock().lock();
+            try {
+                batch.forEach(this::putLocked);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            pageable = batch.nextPageable();
+        } while (batch.hasNext());
+        ready = true;
+        log.info("Product facet index built: {} products in {} ms", ordinals.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(this::removeLocked);
+            } else if (event.getType() == ProductChangedEvent.Type.SAVED) {
+                event.getProducts().forEach(this::putLocked);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Counts every facet under the filter. Each dimension is counted with the other dimensions'
+    // selections applied but not its own, so the client can offer multi-select facets.
+    public FacetCounts count(ProductFilterRequest filter) {
+        lock.readLock().lock();
+        try {
+            BitSet factoryMatches = matchAny(factoryIndex, filter.getFactories());
+            BitSet targetMatches = matchAny(targetIndex, filter.getTargets());
+            BitSet categoryMatches = matchAny(categoryIndex, filter.getCategoryIds());
+            BitSet priceMatches = matchPrice(filter.getMinPrice(), filter.getMaxPrice());
+            BitSet keywordMatches = matchKeyword(filter.getKeyword());
+
+            FacetCounts counts = new FacetCounts();
+            counts.factories = countValues(factoryIndex, intersect(targetMatches, categoryMatches, priceMatches, keywordMatches));
+            counts.targets = countValues(targetIndex, intersect(factoryMatches, categoryMatches, priceMatches, keywordMatches));
+            counts.categories = countValues(categoryIndex, intersect(factoryMatches, targetMatches, priceMatches, keywordMatches));
+            counts.priceBuckets = countPriceBuckets(intersect(factoryMatches, targetMatches, categoryMatches, keywordMatches));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet intersect(BitSet... sets) {
+        BitSet result = (BitSet) live.clone();
+        for (BitSet set : sets) {
+            if (set != null) {
+                result.and(set);
+            }
+        }
+        return result;
+    }
+
+    private static <K> BitSet matchAny(Map<K, BitSet> index, Collection<K> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        for (K value : values) {
+            BitSet bits = index.get(value);
+            if (bits != null) {
+                result.or(bits);
+            }
+        }
+        return result;
+    }
+
+    private BitSet matchPrice(Double min, Double max) {
+        if (min == null && max == null) {
+            return null;
+        }
+        BitSet result = new BitSet(size);
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            double price = prices[ordinal];
+            if ((min == null || price >= min) && (max == null || price <= max)) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    // Same contract as ProductSpecification.nameContains: case-insensitive substring of the name
+    private BitSet matchKeyword(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            return null;
+        }
+        String needle = keyword.toLowerCase();
+        BitSet result = new BitSet(size);
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            if (names[ordinal] != null && names[ordinal].contains(needle)) {
+                result.set(ordinal);
+            }
+        }
+        return result;
+    }
+
+    private static <K> Map<K, Long> countValues(Map<K, BitSet> index, BitSet base) {
+        Map<K, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<K, BitSet> entry : index.entrySet()) {
+            BitSet bits = (BitSet) entry.getValue().clone();
+            bits.and(base);
+            int count = bits.cardinality();
+            if (count > 0) {
+                counts.put(entry.getKey(), (long) count);
+            }
+        }
+        return counts;
+    }
+
+    private long[] countPriceBuckets(BitSet base) {
+        long[] counts = new long[priceBucketBounds.length + 1];
+        for (int ordinal = base.nextSetBit(0); ordinal >= 0; ordinal = base.nextSetBit(ordinal + 1)) {
+            counts[priceBucket(prices[ordinal])]++;
+        }
+        return counts;
+    }
+
+    private int priceBucket(double price) {
+        int index = Arrays.binarySearch(priceBucketBounds, price);
+        // bounds are inclusive lower edges of the next bucket
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private void putLocked(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        Integer existing = ordinals.get(product.getId());
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            unindexLocked(ordinal);
+        } else {
+            ordinal = freeOrdinals.isEmpty() ? size++ : freeOrdinals.pop();
+            ensureCapacity(ordinal + 1);
+            ordinals.put(product.getId(), ordinal);
+        }
+
+        names[ordinal] = product.getName() != null ? product.getName().toLowerCase() : null;
+        factories[ordinal] = product.getFactory();
+        targets[ordinal] = product.getTarget();
+        categoryIds[ordinal] = product.getCategory() != null ? product.getCategory().getId() : null;
+        prices[ordinal] = product.getPrice() != null ? product.getPrice() : 0;
+
+        setBit(factoryIndex, factories[ordinal], ordinal);
+        setBit(targetIndex, targets[ordinal], ordinal);
+        setBit(categoryIndex, categoryIds[ordinal], ordinal);
+        live.set(ordinal);
+    }
+
+    private void removeLocked(Long productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        unindexLocked(ordinal);
+        live.clear(ordinal);
+        names[ordinal] = null;
+        factories[ordinal] = null;
+        targets[ordinal] = null;
+        categoryIds[ordinal] = null;
+        freeOrdinals.push(ordinal);
+    }
+
+    private void unindexLocked(int ordinal) {
+        clearBit(factoryIndex, factories[ordinal], ordinal);
+        clearBit(targetIndex, targets[ordinal], ordinal);
+        clearBit(categoryIndex, categoryIds[ordinal], ordinal);
+    }
+
+    private static <K> void setBit(Map<K, BitSet> index, K value, int ordinal) {
+        if (value != null) {
+            index.computeIfAbsent(value, key -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> index, K value, int ordinal) {
+        if (value == null) {
+            return;
+        }
+        BitSet bits = index.get(value);
+        if (bits != null) {
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= prices.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, prices.length * 2);
+        names = Arrays.copyOf(names, newCapacity);
+        factories = Arrays.copyOf(factories, newCapacity);
+        targets = Arrays.copyOf(targets, newCapacity);
+        categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+    }
+
+    @Getter
+    public static class FacetCounts {
+        private Map<String, Long> factories;
+        private Map<String, Long> targets;
+        private Map<Long, Long> categories;
+        // priceBuckets[i] counts prices in [bounds[i - 1], bounds[i]); the last bucket is open-ended
+        private long[] priceBuckets;
+    }
+}
@@ -0,0 +1,179 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.model.Category;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.response.ImportRowError;
+import com.sonnguyen.laptopshop.repository.CategoryRepository;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+// Saves streamed import rows in fixed-size chunks, one transaction per chunk. A row whose parser throws
+// IllegalArgumentException is reported and skipped; a chunk the database rejects is reported row by row.
+@Slf4j
+@Component
+public class ProductImporter {
+
+    @FunctionalInterface
+    public interface RowSource {
+        void forEach(RowConsumer consumer);
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        // rowNumber must increase from one row to the next
+        void accept(int rowNumber, Supplier<Product> parser);
+    }
+
+    // Runs inside the chunk's transaction, so progress recorded here commits or rolls back with the rows
+    @FunctionalInterface
+    public interface ChunkListener {
+        void onChunk(int lastRow, int imported, List<ImportRowError> errors);
+    }
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final CategoryRegistry categoryRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public ProductImporter(ProductRepository productRepository, CategoryRepository categoryRepository, CategoryRegistry categoryRegistry,
+                           ApplicationEventPublisher eventPublisher, TransactionTemplate transactionTemplate,
+                           @Value("${laptopshop.import.chunk-size:500}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.categoryRegistry = categoryRegistry;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    // Imports every row after resumeAfterRow. Stops with CancellationException when the thread is
+    // interrupted; everything up to the last committed chunk stays saved.
+    public void run(RowSource source, int resumeAfterRow, ChunkListener listener) {
+        categoryRegistry.refresh();
+        Chunk chunk = new Chunk(listener);
+        source.forEach((rowNumber, parser) -> {
+            if (rowNumber <= resumeAfterRow) {
+                return;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Import interrupted at row " + rowNumber);
+            }
+            try {
+                chunk.add(rowNumber, parser.get());
+            } catch (IllegalArgumentException e) {
+                chunk.reject(rowNumber, e.getMessage());
+            }
+        });
+        chunk.flush();
+    }
+
+    private class Chunk {
+        private final ChunkListener listener;
+        private final List<Product> products = new ArrayList<>();
+        private final List<Integer> rowNumbers = new ArrayList<>();
+        private final List<ImportRowError> errors = new ArrayList<>();
+        private int lastRow;
+
+        Chunk(ChunkListener listener) {
+            this.listener = listener;
+        }
+
+        void add(int rowNumber, Product product) {
+            products.add(product);
+            rowNumbers.add(rowNumber);
+            next(rowNumber);
+        }
+
+        void reject(int rowNumber, String message) {
+            errors.add(new ImportRowError(rowNumber, message));
+            next(rowNumber);
+        }
+
+        private void next(int rowNumber) {
+            lastRow = rowNumber;
+            if (products.size() + errors.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (products.isEmpty() && errors.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<ImportRowError> chunkErrors = new ArrayList<>(errors);
+                    List<Product> valid = resolveCategories(chunkErrors);
+                    List<Product> saved = productRepository.saveAll(valid);
+                    if (!saved.isEmpty()) {
+                        eventPublisher.publishEvent(ProductChangedEvent.saved(saved));
+                    }
+                    chunkErrors.sort(Comparator.comparingInt(ImportRowError::getRow));
+                    listener.onChunk(lastRow, saved.size(), chunkErrors);
+                });
+            } catch (RuntimeException e) {
+                log.warn("Import chunk ending at row {} failed", lastRow, e);
+                List<ImportRowError> failed = new ArrayList<>(errors);
+                for (Integer rowNumber : rowNumbers) {
+                    failed.add(new ImportRowError(rowNumber, "Could not save row: " + rootMessage(e)));
+                }
+                failed.sort(Comparator.comparingInt(ImportRowError::getRow));
+                transactionTemplate.executeWithoutResult(status -> listener.onChunk(lastRow, 0, failed));
+            } finally {
+                products.clear();
+                rowNumbers.clear();
+                errors.clear();
+            }
+        }
+
+        // Replaces each product's detached category (carrying an id or a name) with a reference, using
+        // CategoryRegistry instead of a query per row. Names not known yet are created in one batch.
+        // Rows pointing at an unknown category id are left out and reported in chunkErrors.
+        private List<Product> resolveCategories(List<ImportRowError> chunkErrors) {
+            Set<String> names = new HashSet<>();
+            for (Product product : products) {
+                Category category = product.getCategory();
+                if (category != null && category.getId() == null && category.getName() != null) {
+                    names.add(category.getName());
+                }
+            }
+            Map<String, Long> idsByName = names.isEmpty() ? Map.of() : categoryRegistry.resolveOrCreate(names);
+
+            List<Product> valid = new ArrayList<>(products.size());
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                if (product.getImage() == null) product.setImage("");
+                Category category = product.getCategory();
+                if (category != null) {
+                    Long id = category.getId() != null ? category.getId() : idsByName.get(category.getName());
+                    if (!categoryRegistry.exists(id)) {
+                        chunkErrors.add(new ImportRowError(rowNumbers.get(i), "Category not found with id: " + category.getId()));
+                        continue;
+                    }
+                    product.setCategory(categoryRepository.getReferenceById(id));
+                }
+                valid.add(product);
+            }
+            return valid;
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+}
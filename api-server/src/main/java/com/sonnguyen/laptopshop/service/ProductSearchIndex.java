@@ -0,0 +1,252 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-memory inverted index over name/description/factory/target with BM25 ranking.
+// Built once at startup and kept current from ProductChangedEvent after each commit.
+@Slf4j
+@Component
+public class ProductSearchIndex {
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+    private static final float PREFIX_MATCH_WEIGHT = 0.8f;
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float FACTORY_WEIGHT = 2.0f;
+    private static final float TARGET_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ProductRepository productRepository;
+
+    // term -> (productId -> weighted term frequency); sorted so prefixes can be expanded with subMap
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    // productId -> (term -> weighted term frequency), needed to unindex a product
+    private final Map<Long, Map<String, Float>> documents = new HashMap<>();
+    private final Map<Long, Float> documentLengths = new HashMap<>();
+    private double totalLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        Pageable pageable = PageRequest.of(0, BUILD_BATCH_SIZE, Sort.by("id"));
+        Page<Product> batch;
+        do {
+            batch = productRepository.findAll(pageable);
+            lock.writeLock().lock();
+            try {
+                batch.forEach(this::indexLocked);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            pageable = batch.nextPageable();
+        } while (batch.hasNext());
+        ready = true;
+        log.info("Product search index built: {} products, {} terms in {} ms",
+                documents.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                event.getProductIds().forEach(this::removeLocked);
+            } else if (event.getType() == ProductChangedEvent.Type.SAVED) {
+                event.getProducts().forEach(this::indexLocked);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns product ids ranked by relevance; every query term must match (exactly or as a prefix).
+    public Page<Long> search(String query, Pageable pageable) {
+        List<String> terms = tokenize(query).stream().distinct().toList();
+        if (terms.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return Page.empty(pageable);
+            }
+            double averageLength = totalLength / documentCount;
+
+            Map<Long, Double> scores = null;
+            for (String term : terms) {
+                Map<Long, Double> termScores = scoreTerm(term, documentCount, averageLength);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return Page.empty(pageable);
+                }
+            }
+
+            return new PageImpl<>(topIds(scores, pageable), pageable, scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreTerm(String term, int documentCount, double averageLength) {
+        Map<Long, Double> scores = new HashMap<>();
+        accumulate(term, postings.get(term), 1.0f, documentCount, averageLength, scores);
+
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Float>> entry : postings.subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            accumulate(entry.getKey(), entry.getValue(), PREFIX_MATCH_WEIGHT, documentCount, averageLength, scores);
+        }
+        return scores;
+    }
+
+    private void accumulate(String term, Map<Long, Float> posting, float weight, int documentCount,
+                            double averageLength, Map<Long, Double> scores) {
+        if (posting == null || posting.isEmpty()) {
+            return;
+        }
+        int df = posting.size();
+        double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+            double tf = entry.getValue();
+            double length = documentLengths.getOrDefault(entry.getKey(), 0f);
+            double score = weight * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+            scores.merge(entry.getKey(), score, Math::max);
+        }
+    }
+
+    private List<Long> topIds(Map<Long, Double> scores, Pageable pageable) {
+        long offset = pageable.getOffset();
+        if (offset >= scores.size()) {
+            return List.of();
+        }
+        int limit = (int) Math.min(scores.size(), offset + pageable.getPageSize());
+
+        Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue()
+                .reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        // keep only offset + size best hits; the head of the queue is the worst one kept
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(limit, ranking.reversed());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(top);
+        ranked.sort(ranking);
+        return ranked.subList((int) offset, ranked.size()).stream()
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private void indexLocked(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        removeLocked(product.getId());
+
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, product.getName(), NAME_WEIGHT);
+        addField(terms, product.getFactory(), FACTORY_WEIGHT);
+        addField(terms, product.getTarget(), TARGET_WEIGHT);
+        addField(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        float length = 0;
+        for (Map.Entry<String, Float> entry : terms.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(product.getId(), entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(product.getId(), terms);
+        documentLengths.put(product.getId(), length);
+        totalLength += length;
+    }
+
+    private void removeLocked(Long productId) {
+        Map<String, Float> terms = documents.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        Float length = documentLengths.remove(productId);
+        if (length != null) {
+            totalLength -= length;
+        }
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        normalized = DIACRITICS.matcher(normalized).replaceAll("").replace('đ', 'd');
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
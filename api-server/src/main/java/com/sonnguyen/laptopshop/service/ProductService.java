@@ -1,23 +1,43 @@
 package com.sonnguyen.laptopshop.service;
 
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
 import com.sonnguyen.laptopshop.exception.CommonException;
 import com.sonnguyen.laptopshop.model.Category;
 import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.request.ProductFilterRequest;
 import com.sonnguyen.laptopshop.payload.request.ProductRequest;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
+import com.sonnguyen.laptopshop.payload.response.FacetCount;
+import com.sonnguyen.laptopshop.payload.response.ProductFacetsResponse;
 import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import com.sonnguyen.laptopshop.repository.ArchivedOrderDetailRepository;
 import com.sonnguyen.laptopshop.repository.CategoryRepository;
+import com.sonnguyen.laptopshop.repository.OrderDetailRepository;
 import com.sonnguyen.laptopshop.repository.ProductRepository;
 import com.sonnguyen.laptopshop.repository.ProductSpecification;
+import com.sonnguyen.laptopshop.utils.KeysetCursor;
 import com.sonnguyen.laptopshop.utils.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -26,21 +46,45 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final FileStorageService fileStorageService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductCache productCache;
+    private final SalesLeaderboard salesLeaderboard;
+    private final ObjectProvider<CatalogSnapshot> catalogSnapshot;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ArchivedOrderDetailRepository archivedOrderDetailRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InventoryService inventoryService;
 
-    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository, FileStorageService fileStorageService) {
+    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository, FileStorageService fileStorageService,
+                          ProductSearchIndex productSearchIndex, ProductFacetIndex productFacetIndex, ProductCache productCache,
+                          SalesLeaderboard salesLeaderboard, ObjectProvider<CatalogSnapshot> catalogSnapshot,
+                          OrderDetailRepository orderDetailRepository, ArchivedOrderDetailRepository archivedOrderDetailRepository,
+                          ApplicationEventPublisher eventPublisher, InventoryService inventoryService) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
         this.fileStorageService = fileStorageService;
+        this.productSearchIndex = productSearchIndex;
+        this.productFacetIndex = productFacetIndex;
+        this.productCache = productCache;
+        this.salesLeaderboard = salesLeaderboard;
+        this.catalogSnapshot = catalogSnapshot;
+        this.orderDetailRepository = orderDetailRepository;
+        this.archivedOrderDetailRepository = archivedOrderDetailRepository;
+        this.eventPublisher = eventPublisher;
+        this.inventoryService = inventoryService;
     }
 
     public Page<ProductResponse> getAllProducts(Pageable pageable) {
-        Page<Product> products = productRepository.findAll(pageable);
-        return products.map(ModelMapper::toProductResponse);
+        return productRepository.findListing(null, pageable);
     }
 
+    // Served from the product cache; no transaction is opened on a cache hit
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<ProductResponse> getProductById(Long id) {
-        return productRepository.findById(id)
-                .map(ModelMapper::toProductResponse);
+        return Optional.ofNullable(productCache.get(id, key -> productRepository.findWithCategoryById(key)
+                .map(ModelMapper::toProductResponse)
+                .orElse(null)));
     }
 
     public ProductResponse createProduct(ProductRequest request, org.springframework.web.multipart.MultipartFile imageFile) {
@@ -57,12 +101,20 @@ public class ProductService {
 
         product.setCategory(category);
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(savedProduct));
         return ModelMapper.toProductResponse(savedProduct);
     }
 
     public Optional<ProductResponse> updateProduct(Long id, ProductRequest request, org.springframework.web.multipart.MultipartFile imageFile) {
         return productRepository.findById(id)
                 .map(product -> {
+                    if (request.getVersion() == null) {
+                        throw new CommonException("Product version is required", HttpStatus.BAD_REQUEST);
+                    }
+                    if (!request.getVersion().equals(product.getVersion())) {
+                        // a checkout or another edit changed the product since it was read
+                        throw new CommonException("Product was changed by someone else, reload it and try again", HttpStatus.CONFLICT);
+                    }
                     // Find category by ID
                     Category category = categoryRepository.findById(request.getCategoryId())
                             .orElseThrow(() -> new CommonException("Category not found with id: " + request.getCategoryId(), HttpStatus.NOT_FOUND));
@@ -79,36 +131,48 @@ public class ProductService {
                     }
                     
                     product.setDescription(request.getDescription());
+                    if (inventoryService.isHeldInMemory(id) && !Objects.equals(request.getQuantity(), product.getQuantity())) {
+                        // the in-memory counters decide this product's stock until flash-sale mode is turned off
+                        throw new CommonException("Stock of this product is held in flash-sale mode and can't be edited", HttpStatus.CONFLICT);
+                    }
                     product.setQuantity(request.getQuantity());
                     product.setFactory(request.getFactory());
                     product.setTarget(request.getTarget());
                     product.setCategory(category);
-                    return productRepository.save(product);
+                    Product savedProduct = productRepository.save(product);
+                    eventPublisher.publishEvent(ProductChangedEvent.saved(savedProduct));
+                    return savedProduct;
                 })
                 .map(ModelMapper::toProductResponse);
     }
 
     public boolean deleteProduct(Long id) {
         if (productRepository.existsById(id)) {
+            // archived lines are not covered by the Product cascade
+            archivedOrderDetailRepository.deleteByProductIdIn(List.of(id));
             productRepository.deleteById(id);
+            eventPublisher.publishEvent(ProductChangedEvent.deleted(List.of(id)));
             return true;
         }
         return false;
     }
 
     public Page<ProductResponse> searchProducts(String keyword, Pageable pageable) {
-        Page<Product> products = productRepository.findByKeyword(keyword, pageable);
-        return products.map(ModelMapper::toProductResponse);
+        if (!productSearchIndex.isReady()) {
+            // Index is still being built at startup
+            Page<Product> products = productRepository.findByKeyword(keyword, pageable);
+            return products.map(ModelMapper::toProductResponse);
+        }
+        Page<Long> hits = productSearchIndex.search(keyword, pageable);
+        return new PageImpl<>(findResponsesInOrder(hits.getContent()), pageable, hits.getTotalElements());
     }
 
     public Page<ProductResponse> getProductsByFactory(String factory, Pageable pageable) {
-        Page<Product> products = productRepository.findByFactory(factory, pageable);
-        return products.map(ModelMapper::toProductResponse);
+        return productRepository.findListing(ProductSpecification.hasFactoryIn(List.of(factory)), pageable);
     }
 
     public Page<ProductResponse> getProductsByPriceRange(Double minPrice, Double maxPrice, Pageable pageable) {
-        Page<Product> products = productRepository.findByPriceRange(minPrice, maxPrice, pageable);
-        return products.map(ModelMapper::toProductResponse);
+        return productRepository.findListing(ProductSpecification.hasPriceBetween(minPrice, maxPrice), pageable);
     }
 
     public List<String> getAllFactories() {
@@ -116,57 +180,93 @@ public class ProductService {
     }
 
     public Page<ProductResponse> getAvailableProducts(Pageable pageable) {
-        Page<Product> products = productRepository.findAvailableProducts(pageable);
-        return products.map(ModelMapper::toProductResponse);
+        return productRepository.findListing(ProductSpecification.isAvailable(), pageable);
     }
 
-    public Page<ProductResponse> getTopSellingProducts(Pageable pageable) {
-        Page<Product> products = productRepository.findTopSellingProducts(pageable);
-        return products.map(ModelMapper::toProductResponse);
+    public Page<ProductResponse> getTopSellingProducts(SalesLeaderboard.Period period, Pageable pageable) {
+        if (salesLeaderboard.isReady()) {
+            List<Long> ids = salesLeaderboard.top(period, pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(findResponsesInOrder(ids), pageable, salesLeaderboard.size(period));
+        }
+        // leaderboard still building after startup
+        if (period == SalesLeaderboard.Period.ALL_TIME) {
+            Pageable bySold = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                    Sort.by(Sort.Direction.DESC, "sold").and(Sort.by("id")));
+            return productRepository.findListing(null, bySold);
+        }
+        Page<Long> ids = orderDetailRepository.findTopSellingProductIdsSince(salesLeaderboard.startOfWindow(period), pageable);
+        return new PageImpl<>(findResponsesInOrder(ids.getContent()), pageable, ids.getTotalElements());
     }
 
-    public Page<ProductResponse> getProductsWithFilters(
-            List<String> factories,
-            List<String> targets,
-            Double minPrice,
-            Double maxPrice,
-            String keyword,
-            Pageable pageable) {
-        
-        Specification<Product> spec = Specification.where(ProductSpecification.hasFactoryIn(factories))
-                .and(ProductSpecification.hasTargetIn(targets))
-                .and(ProductSpecification.hasPriceBetween(minPrice, maxPrice))
-                .and(ProductSpecification.nameContains(keyword));
+    public Page<ProductResponse> getProductsWithFilters(ProductFilterRequest filter, Pageable pageable) {
+        CatalogSnapshot snapshot = catalogSnapshot.getIfAvailable();
+        if (snapshot != null && snapshot.isReady()) {
+            Page<Long> ids = snapshot.filter(filter, pageable);
+            return new PageImpl<>(findResponsesInOrder(ids.getContent()), pageable, ids.getTotalElements());
+        }
+        return productRepository.findListing(ProductSpecification.matching(filter), pageable);
+    }
 
-        return productRepository.findAll(spec, pageable).map(ModelMapper::toProductResponse);
+    public CursorPageResponse<ProductResponse> scrollProducts(ProductFilterRequest filter, Sort sort, String cursor, int size) {
+        KeysetCursor.checkSize(size);
+        Specification<Product> spec = filter != null ? ProductSpecification.matching(filter) : Specification.where(null);
+        List<ProductResponse> rows = productRepository.findListing(spec.and(KeysetCursor.after(cursor, sort)), sort, size + 1);
+        return KeysetCursor.toResponse(rows, size, sort);
     }
-    public void saveBulk(List<com.sonnguyen.laptopshop.payload.request.BulkProductRequest> requests) {
-        List<Product> products = new java.util.ArrayList<>();
-        
-        for (com.sonnguyen.laptopshop.payload.request.BulkProductRequest request : requests) {
-            Category category = categoryRepository.findById(request.getCategoryId())
-                    .orElseThrow(() -> new CommonException("Category not found with id: " + request.getCategoryId(), HttpStatus.BAD_REQUEST));
-            
-            Product product = new Product();
-            product.setName(request.getName());
-            product.setPrice(request.getPrice());
-            product.setImage(request.getImage());
-            product.setDescription(request.getDescription());
-            product.setQuantity(request.getQuantity());
-            product.setFactory(request.getFactory());
-            product.setTarget(request.getTarget());
-            product.setCategory(category);
-            
-            // Default values
-            product.setSold(0L); 
-            
-            products.add(product);
+
+    public ProductFacetsResponse getFacetedProducts(ProductFilterRequest filter, Pageable pageable) {
+        ProductFacetsResponse response = new ProductFacetsResponse();
+        response.setProducts(getProductsWithFilters(filter, pageable));
+
+        if (!productFacetIndex.isReady()) {
+            // Index is still being built at startup
+            response.setFactories(List.of());
+            response.setTargets(List.of());
+            response.setCategories(List.of());
+            response.setPriceRanges(List.of());
+            return response;
         }
-        
-        productRepository.saveAll(products);
+
+        ProductFacetIndex.FacetCounts counts = productFacetIndex.count(filter);
+        response.setFactories(toFacetCounts(counts.getFactories()));
+        response.setTargets(toFacetCounts(counts.getTargets()));
+
+        Map<Long, String> categoryNames = categoryRepository.findAllById(counts.getCategories().keySet()).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName));
+        response.setCategories(counts.getCategories().entrySet().stream()
+                .map(entry -> new FacetCount(String.valueOf(entry.getKey()),
+                        categoryNames.getOrDefault(entry.getKey(), String.valueOf(entry.getKey())), entry.getValue()))
+                .sorted(Comparator.comparingLong(FacetCount::getCount).reversed())
+                .toList());
+
+        double[] bounds = productFacetIndex.getPriceBucketBounds();
+        long[] bucketCounts = counts.getPriceBuckets();
+        List<FacetCount> priceRanges = new ArrayList<>();
+        for (int i = 0; i < bucketCounts.length; i++) {
+            String from = i > 0 ? String.format("%.0f", bounds[i - 1]) : "";
+            String to = i < bounds.length ? String.format("%.0f", bounds[i]) : "";
+            priceRanges.add(new FacetCount(from + "-" + to, from + " - " + to, bucketCounts[i]));
+        }
+        response.setPriceRanges(priceRanges);
+        return response;
     }
 
-    public void deleteProducts(List<Long> ids) {
-        productRepository.deleteAllById(ids);
+    private static List<FacetCount> toFacetCounts(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> new FacetCount(entry.getKey(), entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingLong(FacetCount::getCount).reversed())
+                .toList();
+    }
+    // Loads the given products in one query and keeps the caller's ordering
+    private List<ProductResponse> findResponsesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductResponse> byId = productRepository.findListingByIds(ids).stream()
+                .collect(Collectors.toMap(ProductResponse::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(java.util.Objects::nonNull)
+                .toList();
     }
 }
@@ -0,0 +1,535 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.OrderStatusChangedEvent;
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.payload.response.SalesCubeRow;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import com.sonnguyen.laptopshop.utils.SaleLines;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Revenue, units and order lines of completed orders by factory x target x category x week, for
+// slice-and-dice reports. Dimensions are dictionary-encoded and every cell is a slot in a set of
+// primitive arrays; a query scans the cells once, filtering by code and summing into the requested
+// groups. Orders are added once (a BitSet of order ids) as they complete. The cube is saved to a
+// snapshot file, and a restart loads it and only reads orders completed since it was saved.
+// Enabled with laptopshop.sales-cube.enabled.
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "laptopshop.sales-cube", name = "enabled", havingValue = "true")
+public class SalesCube {
+
+    public enum Dimension {
+        FACTORY,
+        TARGET,
+        CATEGORY,
+        WEEK
+    }
+
+    private static final String SNAPSHOT_FILE = "sales-cube.bin";
+    // 2: revenue net of coupon discounts; snapshots of older formats are rebuilt from the orders
+    private static final int SNAPSHOT_FORMAT = 2;
+    private static final int BUILD_BATCH_SIZE = 500;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_CODE = -1;
+    // codes are packed into 16 bits each in the cell key
+    private static final int MAX_CODES = 0xFFFE;
+    // completions committed this long before a snapshot may not have reached it yet
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(10);
+
+    private final OrderRepository orderRepository;
+    private final OrderArchiveService orderArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone;
+    private final Path snapshotPath;
+    private final long snapshotIntervalMillis;
+
+    // packed (factory, target, category, week) -> cell slot
+    private final Map<Long, Integer> cells = new HashMap<>();
+    private int size;
+    private int[] factoryCodes = new int[INITIAL_CAPACITY];
+    private int[] targetCodes = new int[INITIAL_CAPACITY];
+    private int[] categoryCodes = new int[INITIAL_CAPACITY];
+    // weeks since the Monday before 1970-01-01, in zone
+    private int[] weeks = new int[INITIAL_CAPACITY];
+    private double[] revenue = new double[INITIAL_CAPACITY];
+    private long[] units = new long[INITIAL_CAPACITY];
+    private long[] lines = new long[INITIAL_CAPACITY];
+
+    private Dictionary<String> factories = new Dictionary<>();
+    private Dictionary<String> targets = new Dictionary<>();
+    private Dictionary<Long> categories = new Dictionary<>();
+    // latest name seen per category code
+    private final Map<Integer, String> categoryNames = new HashMap<>();
+    private BitSet includedOrders = new BitSet();
+    private boolean dirty;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    // builds, catch-up, completed orders and snapshots all run here, one at a time
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sales-cube");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SalesCube(OrderRepository orderRepository, OrderArchiveService orderArchiveService,
+                     TransactionTemplate transactionTemplate,
+                     @Value("${laptopshop.analytics.zone:UTC}") String zone,
+                     @Value("${laptopshop.sales-cube.snapshot-dir:data/sales-cube}") String snapshotDir,
+                     @Value("${laptopshop.sales-cube.snapshot-interval:5m}") Duration snapshotInterval) {
+        this.orderRepository = orderRepository;
+        this.orderArchiveService = orderArchiveService;
+        this.transactionTemplate = transactionTemplate;
+        this.zone = ZoneId.of(zone);
+        this.snapshotPath = Paths.get(snapshotDir).resolve(SNAPSHOT_FILE);
+        this.snapshotIntervalMillis = Math.max(1, snapshotInterval.toMillis());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker.execute(this::load);
+        worker.scheduleWithFixedDelay(this::saveQuietly, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        worker.shutdown();
+        worker.awaitTermination(10, TimeUnit.SECONDS);
+        if (ready) {
+            saveQuietly();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (OrderStatus.COMPLETED.name().equals(event.getStatus())) {
+            List<Long> orderIds = List.copyOf(event.getPreviousStatuses().keySet());
+            worker.execute(() -> addOrdersQuietly(orderIds));
+        }
+    }
+
+    // Sums the cells matching the filters (null or empty: no filter) into one row per combination of
+    // the groupBy dimensions; an empty groupBy rolls everything up into one row. Highest revenue first.
+    public List<SalesCubeRow> query(Set<Dimension> groupBy, Collection<String> factoryFilter, Collection<String> targetFilter,
+                                    Collection<Long> categoryFilter, LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            boolean[] allowedFactories = factories.lookup(factoryFilter);
+            boolean[] allowedTargets = targets.lookup(targetFilter);
+            boolean[] allowedCategories = categories.lookup(categoryFilter);
+            int fromWeek = from != null ? week(from) : Integer.MIN_VALUE;
+            int toWeek = to != null ? week(to) : Integer.MAX_VALUE;
+            boolean byFactory = groupBy.contains(Dimension.FACTORY);
+            boolean byTarget = groupBy.contains(Dimension.TARGET);
+            boolean byCategory = groupBy.contains(Dimension.CATEGORY);
+            boolean byWeek = groupBy.contains(Dimension.WEEK);
+
+            // group key -> slot in the sums below
+            Map<Long, Integer> groups = new HashMap<>();
+            List<long[]> groupCodes = new ArrayList<>();
+            double[] groupRevenue = new double[16];
+            long[] groupUnits = new long[16];
+            long[] groupLines = new long[16];
+            for (int cell = 0; cell < size; cell++) {
+                if (!allowed(allowedFactories, factoryCodes[cell]) || !allowed(allowedTargets, targetCodes[cell])
+                        || !allowed(allowedCategories, categoryCodes[cell]) || weeks[cell] < fromWeek || weeks[cell] > toWeek) {
+                    continue;
+                }
+                int factory = byFactory ? factoryCodes[cell] : NO_CODE;
+                int target = byTarget ? targetCodes[cell] : NO_CODE;
+                int category = byCategory ? categoryCodes[cell] : NO_CODE;
+                int week = byWeek ? weeks[cell] : 0;
+                int group = groups.computeIfAbsent(pack(factory, target, category, week), key -> {
+                    groupCodes.add(new long[]{factory, target, category, week});
+                    return groupCodes.size() - 1;
+                });
+                if (group >= groupRevenue.length) {
+                    groupRevenue = Arrays.copyOf(groupRevenue, groupRevenue.length * 2);
+                    groupUnits = Arrays.copyOf(groupUnits, groupUnits.length * 2);
+                    groupLines = Arrays.copyOf(groupLines, groupLines.length * 2);
+                }
+                groupRevenue[group] += revenue[cell];
+                groupUnits[group] += units[cell];
+                groupLines[group] += lines[cell];
+            }
+
+            List<SalesCubeRow> rows = new ArrayList<>(groupCodes.size());
+            for (int group = 0; group < groupCodes.size(); group++) {
+                long[] codes = groupCodes.get(group);
+                SalesCubeRow row = new SalesCubeRow();
+                if (byFactory) {
+                    row.setFactory(factories.decode((int) codes[0]));
+                }
+                if (byTarget) {
+                    row.setTarget(targets.decode((int) codes[1]));
+                }
+                if (byCategory) {
+                    row.setCategoryId(categories.decode((int) codes[2]));
+                    row.setCategoryName(categoryNames.get((int) codes[2]));
+                }
+                if (byWeek) {
+                    row.setWeek(weekStart((int) codes[3]));
+                }
+                row.setRevenue(groupRevenue[group]);
+                row.setUnits(groupUnits[group]);
+                row.setLines(groupLines[group]);
+                rows.add(row);
+            }
+            rows.sort(Comparator.comparingDouble(SalesCubeRow::getRevenue).reversed());
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        Instant savedAt = readSnapshot();
+        if (savedAt != null) {
+            Instant since = savedAt.minus(CATCH_UP_MARGIN);
+            long afterId = 0;
+            int caughtUp = 0;
+            List<Long> batch;
+            do {
+                batch = orderRepository.findIdsByStatusUpdatedSince(OrderStatus.COMPLETED.name(), since, afterId,
+                        PageRequest.of(0, BUILD_BATCH_SIZE));
+                if (!batch.isEmpty()) {
+                    caughtUp += addOrders(batch);
+                    afterId = batch.get(batch.size() - 1);
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+            log.info("Sales cube loaded from {} ({} cells), {} orders completed since added in {} ms",
+                    snapshotPath, size, caughtUp, System.currentTimeMillis() - start);
+        } else {
+            long afterId = 0;
+            List<Long> batch;
+            do {
+                // archived orders included; one transaction per batch so an order archived meanwhile
+                // is read from exactly one table
+                long after = afterId;
+                batch = Objects.requireNonNull(transactionTemplate.execute(tx -> {
+                    List<Long> ids = orderArchiveService.completedIdsAfter(after, BUILD_BATCH_SIZE);
+                    List<Long> missing = missing(ids);
+                    if (!missing.isEmpty()) {
+                        apply(missing, orderArchiveService.saleLines(missing));
+                    }
+                    return ids;
+                }));
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1);
+                }
+            } while (batch.size() == BUILD_BATCH_SIZE);
+            log.info("Sales cube built from {} completed orders ({} cells) in {} ms", includedOrders.cardinality(), size,
+                    System.currentTimeMillis() - start);
+            saveQuietly();
+        }
+        ready = true;
+    }
+
+    private void addOrdersQuietly(List<Long> orderIds) {
+        try {
+            addOrders(orderIds);
+        } catch (RuntimeException e) {
+            // the next restart without a snapshot rebuilds from the orders table
+            log.warn("Could not add completed orders {} to the sales cube", orderIds, e);
+        }
+    }
+
+    // Worker thread only; returns the number of orders added
+    private int addOrders(List<Long> orderIds) {
+        List<Long> missing = missing(orderIds);
+        return missing.isEmpty() ? 0 : apply(missing, orderRepository.findSaleLines(missing));
+    }
+
+    private List<Long> missing(List<Long> orderIds) {
+        return orderIds.stream().filter(id -> !includedOrders.get(Math.toIntExact(id))).toList();
+    }
+
+    // Adds the findSaleLines rows of the orders
+    private int apply(List<Long> orderIds, List<Object[]> rows) {
+        lock.writeLock().lock();
+        try {
+            double[] lineRevenue = SaleLines.revenue(rows);
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] row = rows.get(i);
+                if (row[8] == null) {
+                    continue;
+                }
+                Instant orderDate = row[1] != null ? (Instant) row[1] : Instant.now();
+                long quantity = ((Number) row[8]).longValue();
+                int category = categories.encode((Long) row[6]);
+                if (category != NO_CODE && row[7] != null) {
+                    categoryNames.put(category, (String) row[7]);
+                }
+                int cell = cellLocked(factories.encode((String) row[5]), targets.encode((String) row[10]), category,
+                        week(orderDate.atZone(zone).toLocalDate()));
+                revenue[cell] += lineRevenue[i];
+                units[cell] += quantity;
+                lines[cell]++;
+            }
+            orderIds.forEach(id -> includedOrders.set(Math.toIntExact(id)));
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return orderIds.size();
+    }
+
+    private int cellLocked(int factory, int target, int category, int week) {
+        long key = pack(factory, target, category, week);
+        Integer existing = cells.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == weeks.length) {
+            int capacity = size * 2;
+            factoryCodes = Arrays.copyOf(factoryCodes, capacity);
+            targetCodes = Arrays.copyOf(targetCodes, capacity);
+            categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+            weeks = Arrays.copyOf(weeks, capacity);
+            revenue = Arrays.copyOf(revenue, capacity);
+            units = Arrays.copyOf(units, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        int cell = size++;
+        factoryCodes[cell] = factory;
+        targetCodes[cell] = target;
+        categoryCodes[cell] = category;
+        weeks[cell] = week;
+        cells.put(key, cell);
+        return cell;
+    }
+
+    // codes are shifted by one so NO_CODE packs as 0; weeks fit 16 bits until the 33rd century
+    private static long pack(int factory, int target, int category, int week) {
+        return ((long) (factory + 1) << 48) | ((long) (target + 1) << 32) | ((long) (category + 1) << 16) | (week & 0xFFFFL);
+    }
+
+    private static boolean allowed(boolean[] allowedCodes, int code) {
+        return allowedCodes == null || (code != NO_CODE && code < allowedCodes.length && allowedCodes[code]);
+    }
+
+    // 1970-01-01 was a Thursday, so day -3 is the Monday that starts week 0
+    private static int week(LocalDate date) {
+        return (int) Math.floorDiv(date.toEpochDay() + 3, 7);
+    }
+
+    private static LocalDate weekStart(int week) {
+        return LocalDate.ofEpochDay(week * 7L - 3);
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save the sales cube snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a crash mid-write keeps the previous snapshot
+    private void save() throws IOException {
+        Files.createDirectories(snapshotPath.getParent());
+        Path temporary = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        lock.readLock().lock();
+        try {
+            if (!dirty && Files.exists(snapshotPath)) {
+                return;
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(SNAPSHOT_FORMAT);
+                out.writeLong(Instant.now().toEpochMilli());
+                out.writeUTF(zone.getId());
+                factories.write(out, out::writeUTF);
+                targets.write(out, out::writeUTF);
+                categories.write(out, out::writeLong);
+                out.writeInt(categoryNames.size());
+                for (Map.Entry<Integer, String> name : categoryNames.entrySet()) {
+                    out.writeInt(name.getKey());
+                    out.writeUTF(name.getValue());
+                }
+                out.writeInt(size);
+                for (int cell = 0; cell < size; cell++) {
+                    out.writeInt(factoryCodes[cell]);
+                    out.writeInt(targetCodes[cell]);
+                    out.writeInt(categoryCodes[cell]);
+                    out.writeInt(weeks[cell]);
+                    out.writeDouble(revenue[cell]);
+                    out.writeLong(units[cell]);
+                    out.writeLong(lines[cell]);
+                }
+                long[] orderBits = includedOrders.toLongArray();
+                out.writeInt(orderBits.length);
+                for (long bits : orderBits) {
+                    out.writeLong(bits);
+                }
+            }
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns when the snapshot was saved, or null when there is none usable
+    private Instant readSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_FORMAT) {
+                log.info("Sales cube snapshot {} has an old format, rebuilding", snapshotPath);
+                return null;
+            }
+            Instant savedAt = Instant.ofEpochMilli(in.readLong());
+            if (!zone.getId().equals(in.readUTF())) {
+                log.info("Sales cube snapshot {} uses another zone, rebuilding", snapshotPath);
+                return null;
+            }
+            Dictionary<String> loadedFactories = Dictionary.read(in, in::readUTF);
+            Dictionary<String> loadedTargets = Dictionary.read(in, in::readUTF);
+            Dictionary<Long> loadedCategories = Dictionary.read(in, in::readLong);
+            Map<Integer, String> loadedNames = new HashMap<>();
+            int nameCount = in.readInt();
+            for (int i = 0; i < nameCount; i++) {
+                loadedNames.put(in.readInt(), in.readUTF());
+            }
+            int cellCount = in.readInt();
+            int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, cellCount)) * 2);
+            int[] loadedFactoryCodes = new int[capacity];
+            int[] loadedTargetCodes = new int[capacity];
+            int[] loadedCategoryCodes = new int[capacity];
+            int[] loadedWeeks = new int[capacity];
+            double[] loadedRevenue = new double[capacity];
+            long[] loadedUnits = new long[capacity];
+            long[] loadedLines = new long[capacity];
+            Map<Long, Integer> loadedCells = new HashMap<>(cellCount * 2);
+            for (int cell = 0; cell < cellCount; cell++) {
+                loadedFactoryCodes[cell] = in.readInt();
+                loadedTargetCodes[cell] = in.readInt();
+                loadedCategoryCodes[cell] = in.readInt();
+                loadedWeeks[cell] = in.readInt();
+                loadedRevenue[cell] = in.readDouble();
+                loadedUnits[cell] = in.readLong();
+                loadedLines[cell] = in.readLong();
+                loadedCells.put(pack(loadedFactoryCodes[cell], loadedTargetCodes[cell], loadedCategoryCodes[cell],
+                        loadedWeeks[cell]), cell);
+            }
+            long[] orderBits = new long[in.readInt()];
+            for (int i = 0; i < orderBits.length; i++) {
+                orderBits[i] = in.readLong();
+            }
+
+            lock.writeLock().lock();
+            try {
+                factories = loadedFactories;
+                targets = loadedTargets;
+                categories = loadedCategories;
+                categoryNames.clear();
+                categoryNames.putAll(loadedNames);
+                cells.clear();
+                cells.putAll(loadedCells);
+                size = cellCount;
+                factoryCodes = loadedFactoryCodes;
+                targetCodes = loadedTargetCodes;
+                categoryCodes = loadedCategoryCodes;
+                weeks = loadedWeeks;
+                revenue = loadedRevenue;
+                units = loadedUnits;
+                lines = loadedLines;
+                includedOrders = BitSet.valueOf(orderBits);
+                dirty = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return savedAt;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Sales cube snapshot {} is unreadable, rebuilding", snapshotPath, e);
+            return null;
+        }
+    }
+
+    private interface ValueWriter<V> {
+        void write(V value) throws IOException;
+    }
+
+    private interface ValueReader<V> {
+        V read() throws IOException;
+    }
+
+    private static final class Dictionary<V> {
+        private final Map<V, Integer> codes = new HashMap<>();
+        private final List<V> values = new ArrayList<>();
+
+        int encode(V value) {
+            if (value == null) {
+                return NO_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (values.size() >= MAX_CODES) {
+                throw new IllegalStateException("Too many distinct values for a sales cube dimension");
+            }
+            codes.put(value, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        V decode(int code) {
+            return code == NO_CODE ? null : values.get(code);
+        }
+
+        boolean[] lookup(Collection<V> filter) {
+            if (filter == null || filter.isEmpty()) {
+                return null;
+            }
+            boolean[] allowed = new boolean[values.size()];
+            for (V value : filter) {
+                Integer code = codes.get(value);
+                if (code != null) {
+                    allowed[code] = true;
+                }
+            }
+            return allowed;
+        }
+
+        void write(DataOutputStream out, ValueWriter<V> writer) throws IOException {
+            out.writeInt(values.size());
+            for (V value : values) {
+                writer.write(value);
+            }
+        }
+
+        static <V> Dictionary<V> read(DataInputStream in, ValueReader<V> reader) throws IOException {
+            Dictionary<V> dictionary = new Dictionary<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                dictionary.encode(reader.read());
+            }
+            return dictionary;
+        }
+    }
+}
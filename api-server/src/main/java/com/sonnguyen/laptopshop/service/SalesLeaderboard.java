@@ -0,0 +1,419 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.OrderPlacedEvent;
+import com.sonnguyen.laptopshop.event.ProductChangedEvent;
+import com.sonnguyen.laptopshop.event.SalesReturnedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.repository.OrderDetailRepository;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Sorted in-memory rankings of products by units sold: all time (seeded from Product.sold) and
+// rolling day windows (seeded from order_details grouped by day). Kept current from OrderPlacedEvent
+// after each checkout commits and SalesReturnedEvent after each cancellation, so reading the top k
+// is a walk over the first k entries.
+// The seed reads one snapshot. A sale delivered before it is already in the snapshot and skipped; one
+// published before it but delivered after is looked up in the snapshot to decide; the rest are applied.
+@Slf4j
+@Component
+public class SalesLeaderboard {
+
+    public enum Period {
+        ALL_TIME("all", 0),
+        TODAY("today", 1),
+        LAST_7_DAYS("7d", 7),
+        LAST_30_DAYS("30d", 30);
+
+        private final String param;
+        private final int days;
+
+        Period(String param, int days) {
+            this.param = param;
+            this.days = days;
+        }
+
+        public static Period fromParam(String value) {
+            for (Period period : values()) {
+                if (period.param.equalsIgnoreCase(value)) {
+                    return period;
+                }
+            }
+            throw new CommonException("Unknown period: " + value, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static final int BUILD_BATCH_SIZE = 1000;
+    private static final int MAX_WINDOW_DAYS = 30;
+
+    private final ProductRepository productRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate snapshotTransaction;
+    private final ZoneId zone;
+
+    private final Map<Period, Ranking> rankings = new EnumMap<>(Period.class);
+    // day -> (productId -> units sold that day); only days still inside the widest window are kept
+    private final NavigableMap<LocalDate, Map<Long, Long>> dailySales = new TreeMap<>();
+    private LocalDate today;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    // sale events published before the seed's snapshot and not delivered yet -> whether the snapshot
+    // counts them, null until the seed has looked them up; guarded by itself, like snapshotTaken
+    private final Map<Object, Boolean> unseeded = new IdentityHashMap<>();
+    private boolean snapshotTaken;
+
+    public SalesLeaderboard(ProductRepository productRepository, OrderDetailRepository orderDetailRepository,
+                            OrderRepository orderRepository, PlatformTransactionManager transactionManager,
+                            @Value("${laptopshop.leaderboard.zone:UTC}") ZoneId zone) {
+        this.productRepository = productRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.orderRepository = orderRepository;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+        this.zone = zone;
+        this.today = LocalDate.now(zone);
+        // the all-time ranking lists every product, windows only those that sold in them
+        rankings.put(Period.ALL_TIME, new Ranking(true));
+        rankings.put(Period.TODAY, new Ranking(false));
+        rankings.put(Period.LAST_7_DAYS, new Ranking(false));
+        rankings.put(Period.LAST_30_DAYS, new Ranking(false));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        // held until ready, so no sale is delivered between the snapshot and the lookups below
+        lock.writeLock().lock();
+        try {
+            today = LocalDate.now(zone);
+            snapshotTransaction.executeWithoutResult(status -> {
+                long afterId = 0;
+                List<Object[]> batch;
+                synchronized (unseeded) {
+                    // the first read fixes the snapshot; anything published from here on commits after it
+                    snapshotTaken = true;
+                    batch = productRepository.findSoldCountsAfter(afterId, PageRequest.ofSize(BUILD_BATCH_SIZE));
+                }
+                while (true) {
+                    for (Object[] row : batch) {
+                        afterId = (Long) row[0];
+                        rankings.get(Period.ALL_TIME).set(afterId, row[1] != null ? (Long) row[1] : 0L);
+                    }
+                    if (batch.size() < BUILD_BATCH_SIZE) {
+                        break;
+                    }
+                    batch = productRepository.findSoldCountsAfter(afterId, PageRequest.ofSize(BUILD_BATCH_SIZE));
+                }
+
+                Instant since = startOfWindow(MAX_WINDOW_DAYS);
+                for (Object[] row : orderDetailRepository.sumQuantityByProductAndDay(since)) {
+                    Long productId = ((Number) row[0]).longValue();
+                    LocalDate day = row[1] instanceof LocalDate date ? date : ((Date) row[1]).toLocalDate();
+                    addWindowSalesLocked(day, productId, ((Number) row[2]).longValue());
+                }
+                lookUpUnseeded();
+            });
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Sales leaderboard built: {} products, {} sold in the last {} days, in {} ms",
+                rankings.get(Period.ALL_TIME).size(), rankings.get(Period.LAST_30_DAYS).size(),
+                MAX_WINDOW_DAYS, System.currentTimeMillis() - start);
+    }
+
+    // Runs when a sale is published, inside its transaction and ahead of the listeners below
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onOrderPublished(OrderPlacedEvent event) {
+        track(event);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onSalesReturnPublished(SalesReturnedEvent event) {
+        track(event);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onOrderRolledBack(OrderPlacedEvent event) {
+        forget(event);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onSalesReturnRolledBack(SalesReturnedEvent event) {
+        forget(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (seeded(event)) {
+                return;
+            }
+            rollOverLocked();
+            LocalDate day = LocalDate.ofInstant(event.getPlacedAt() != null ? event.getPlacedAt() : Instant.now(), zone);
+            event.getQuantities().forEach((productId, quantity) -> {
+                rankings.get(Period.ALL_TIME).add(productId, quantity);
+                addWindowSalesLocked(day, productId, quantity);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Cancelled units come off the all-time count and off the day they were sold in
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSalesReturned(SalesReturnedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (seeded(event)) {
+                return;
+            }
+            rollOverLocked();
+            for (SalesReturnedEvent.Line line : event.getLines()) {
+                rankings.get(Period.ALL_TIME).add(line.productId(), -line.quantity());
+                LocalDate day = LocalDate.ofInstant(line.soldAt() != null ? line.soldAt() : Instant.now(), zone);
+                addWindowSalesLocked(day, line.productId(), -line.quantity());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                for (Long productId : event.getProductIds()) {
+                    rankings.values().forEach(ranking -> ranking.remove(productId));
+                    dailySales.values().forEach(sales -> sales.remove(productId));
+                }
+            } else if (event.getType() == ProductChangedEvent.Type.SAVED) {
+                for (Product product : event.getProducts()) {
+                    if (product.getId() != null) {
+                        rankings.get(Period.ALL_TIME).set(product.getId(), product.getSold() != null ? product.getSold() : 0L);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Product ids ranked by units sold (ties by id), skipping the first offset entries
+    public List<Long> top(Period period, long offset, int limit) {
+        rollOver();
+        lock.readLock().lock();
+        try {
+            return rankings.get(period).top(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long size(Period period) {
+        rollOver();
+        lock.readLock().lock();
+        try {
+            return rankings.get(period).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // First instant counted by a window of the given number of days, today included
+    public Instant startOfWindow(int days) {
+        return LocalDate.now(zone).minusDays(days - 1L).atStartOfDay(zone).toInstant();
+    }
+
+    public Instant startOfWindow(Period period) {
+        return startOfWindow(period.days);
+    }
+
+    private void track(Object event) {
+        synchronized (unseeded) {
+            if (!snapshotTaken) {
+                unseeded.put(event, null);
+            }
+        }
+    }
+
+    private void forget(Object event) {
+        synchronized (unseeded) {
+            unseeded.remove(event);
+        }
+    }
+
+    // Whether the seed counts a delivered sale already; call under the write lock
+    private boolean seeded(Object event) {
+        synchronized (unseeded) {
+            if (!snapshotTaken) {
+                // committed before the seed has read anything
+                unseeded.remove(event);
+                return true;
+            }
+            return Boolean.TRUE.equals(unseeded.remove(event));
+        }
+    }
+
+    // Looks up, in the seed's snapshot, the sales published before it that are not delivered yet:
+    // an order counts once it exists there, a return once its orders are cancelled there
+    private void lookUpUnseeded() {
+        synchronized (unseeded) {
+            Set<Long> orderIds = new HashSet<>();
+            for (Object event : unseeded.keySet()) {
+                if (event instanceof OrderPlacedEvent placed) {
+                    orderIds.add(placed.getOrderId());
+                } else if (event instanceof SalesReturnedEvent returned) {
+                    orderIds.addAll(returned.getOrderIds());
+                }
+            }
+            if (orderIds.isEmpty()) {
+                return;
+            }
+            Map<Long, String> statuses = new HashMap<>();
+            for (Object[] row : orderRepository.findStatuses(orderIds)) {
+                statuses.put((Long) row[0], (String) row[1]);
+            }
+            for (Map.Entry<Object, Boolean> entry : unseeded.entrySet()) {
+                if (entry.getKey() instanceof OrderPlacedEvent placed) {
+                    entry.setValue(statuses.containsKey(placed.getOrderId()));
+                } else if (entry.getKey() instanceof SalesReturnedEvent returned) {
+                    entry.setValue(returned.getOrderIds().stream()
+                            .allMatch(id -> OrderStatus.CANCELLED.name().equals(statuses.get(id))));
+                }
+            }
+        }
+    }
+
+    private void rollOver() {
+        if (LocalDate.now(zone).equals(today)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            rollOverLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Advances day by day, subtracting the day that falls out of each window
+    private void rollOverLocked() {
+        LocalDate now = LocalDate.now(zone);
+        while (today.isBefore(now)) {
+            today = today.plusDays(1);
+            for (Map.Entry<Period, Ranking> entry : rankings.entrySet()) {
+                int days = entry.getKey().days;
+                if (days == 0) {
+                    continue;
+                }
+                Map<Long, Long> expired = dailySales.get(today.minusDays(days));
+                if (expired != null) {
+                    expired.forEach((productId, quantity) -> entry.getValue().add(productId, -quantity));
+                }
+            }
+        }
+        dailySales.headMap(today.minusDays(MAX_WINDOW_DAYS - 1L), false).clear();
+    }
+
+    private void addWindowSalesLocked(LocalDate day, Long productId, long quantity) {
+        if (day.isAfter(today) || !day.isAfter(today.minusDays(MAX_WINDOW_DAYS))) {
+            return;
+        }
+        dailySales.computeIfAbsent(day, key -> new HashMap<>()).merge(productId, quantity, Long::sum);
+        for (Map.Entry<Period, Ranking> entry : rankings.entrySet()) {
+            int days = entry.getKey().days;
+            if (days > 0 && day.isAfter(today.minusDays(days))) {
+                entry.getValue().add(productId, quantity);
+            }
+        }
+    }
+
+    private static final class Ranking {
+
+        private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::sold).reversed()
+                .thenComparingLong(Entry::productId);
+
+        private final boolean keepZero;
+        private final Map<Long, Long> counts = new HashMap<>();
+        private final NavigableSet<Entry> entries = new TreeSet<>(ORDER);
+
+        private Ranking(boolean keepZero) {
+            this.keepZero = keepZero;
+        }
+
+        void add(long productId, long delta) {
+            Long current = counts.get(productId);
+            // a return never takes a product below zero, even one sold before the rankings were seeded
+            set(productId, Math.max(0, (current != null ? current : 0L) + delta));
+        }
+
+        void set(long productId, long sold) {
+            remove(productId);
+            if (sold > 0 || (keepZero && sold == 0)) {
+                counts.put(productId, sold);
+                entries.add(new Entry(productId, sold));
+            }
+        }
+
+        void remove(long productId) {
+            Long current = counts.remove(productId);
+            if (current != null) {
+                entries.remove(new Entry(productId, current));
+            }
+        }
+
+        List<Long> top(long offset, int limit) {
+            List<Long> ids = new ArrayList<>(Math.min(limit, entries.size()));
+            Iterator<Entry> iterator = entries.iterator();
+            for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            while (ids.size() < limit && iterator.hasNext()) {
+                ids.add(iterator.next().productId());
+            }
+            return ids;
+        }
+
+        int size() {
+            return counts.size();
+        }
+
+        private record Entry(long productId, long sold) {
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.OrderStatusChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.OrderStatus;
+import com.sonnguyen.laptopshop.model.SalesRollup;
+import com.sonnguyen.laptopshop.model.SalesRollupState;
+import com.sonnguyen.laptopshop.payload.response.SalesRollupResponse;
+import com.sonnguyen.laptopshop.repository.OrderRepository;
+import com.sonnguyen.laptopshop.repository.SalesRollupRepository;
+import com.sonnguyen.laptopshop.repository.SalesRollupStateRepository;
+import com.sonnguyen.laptopshop.utils.SaleLines;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Maintains the sales_rollups table. Orders are rolled up in the transaction that completes them,
+// so a bucket never counts an order twice or misses one that committed. History is rebuilt by a
+// backfill that walks completed orders in id order, chunk by chunk, and resumes after a restart.
+@Slf4j
+@Service
+public class SalesRollupService {
+
+    private static final Comparator<SalesRollup> BUCKET_ORDER = Comparator
+            .comparing(SalesRollup::getGranularity)
+            .thenComparing(SalesRollup::getDimension)
+            .thenComparing(SalesRollup::getBucketStart)
+            .thenComparing(SalesRollup::getDimensionKey);
+
+    private final OrderRepository orderRepository;
+    private final OrderArchiveService orderArchiveService;
+    private final SalesRollupRepository rollupRepository;
+    private final SalesRollupStateRepository stateRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ZoneId zone;
+    private final int chunkSize;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sales-rollup-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SalesRollupService(OrderRepository orderRepository, OrderArchiveService orderArchiveService,
+                              SalesRollupRepository rollupRepository,
+                              SalesRollupStateRepository stateRepository, TransactionTemplate transactionTemplate,
+                              @Value("${laptopshop.analytics.zone:UTC}") String zone,
+                              @Value("${laptopshop.analytics.chunk-size:500}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.orderArchiveService = orderArchiveService;
+        this.rollupRepository = rollupRepository;
+        this.stateRepository = stateRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.zone = ZoneId.of(zone);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    // First start: backfill everything; a backfill cut short by a restart picks up where it stopped
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeBackfill() {
+        Optional<SalesRollupState> state = stateRepository.findById(SalesRollupState.SINGLETON_ID);
+        if (state.isEmpty()) {
+            startBackfill();
+        } else if (state.get().getRevenueBasis() < SalesRollupState.REVENUE_BASIS) {
+            log.info("Sales rollups were built with an older revenue definition; rebuilding them");
+            startBackfill();
+        } else if (state.get().getBackfillCompletedAt() == null && backfillRunning.compareAndSet(false, true)) {
+            log.info("Resuming sales rollup backfill after order {}", state.get().getBackfillCursor());
+            backfillExecutor.execute(this::runBackfill);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        backfillExecutor.shutdownNow();
+    }
+
+    // Runs before the completing transaction commits, in it
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        if (!OrderStatus.COMPLETED.name().equals(event.getStatus())) {
+            return;
+        }
+        // a shared lock: waits for a backfill chunk in progress, which has then either counted these
+        // orders or moved its cursor past them
+        long rolledUpThrough = stateRepository.findForShare(SalesRollupState.SINGLETON_ID)
+                .filter(state -> state.getBackfillCompletedAt() == null)
+                .map(SalesRollupState::getBackfillCursor)
+                .orElse(Long.MAX_VALUE);
+        List<Long> orderIds = event.getPreviousStatuses().keySet().stream()
+                .filter(id -> id <= rolledUpThrough)
+                .toList();
+        if (!orderIds.isEmpty()) {
+            rollUp(orderRepository.findSaleLines(orderIds));
+        }
+    }
+
+    // Clears the rollups and rebuilds them from all completed orders; false when one is already running
+    public boolean startBackfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                SalesRollupState state = stateRepository.findForUpdate(SalesRollupState.SINGLETON_ID)
+                        .orElseGet(SalesRollupState::new);
+                rollupRepository.deleteAllRows();
+                state.setBackfillCursor(0);
+                state.setRevenueBasis(SalesRollupState.REVENUE_BASIS);
+                state.setBackfillStartedAt(Instant.now());
+                state.setBackfillCompletedAt(null);
+                stateRepository.save(state);
+            });
+            backfillExecutor.execute(this::runBackfill);
+            return true;
+        } catch (RuntimeException e) {
+            backfillRunning.set(false);
+            throw e;
+        }
+    }
+
+    public Optional<SalesRollupState> backfillState() {
+        return stateRepository.findById(SalesRollupState.SINGLETON_ID);
+    }
+
+    public boolean isBackfillRunning() {
+        return backfillRunning.get();
+    }
+
+    public List<SalesRollupResponse> series(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension,
+                                            String key, Instant from, Instant to) {
+        String dimensionKey = dimension == SalesRollup.Dimension.TOTAL ? SalesRollup.TOTAL_KEY : key;
+        if (dimensionKey == null || dimensionKey.isBlank()) {
+            throw new CommonException("key is required for dimension " + dimension, HttpStatus.BAD_REQUEST);
+        }
+        checkRange(from, to);
+        return rollupRepository.findSeries(granularity, dimension, dimensionKey, from, to).stream()
+                .map(rollup -> {
+                    SalesRollupResponse response = new SalesRollupResponse();
+                    response.setBucketStart(rollup.getBucketStart());
+                    response.setDimension(rollup.getDimension().name());
+                    response.setKey(rollup.getDimensionKey());
+                    response.setLabel(rollup.getLabel());
+                    response.setRevenue(rollup.getRevenue());
+                    response.setOrders(rollup.getOrders());
+                    response.setUnits(rollup.getUnits());
+                    return response;
+                })
+                .toList();
+    }
+
+    // Products, factories or categories with the highest revenue over the range; day buckets unless
+    // the range needs hour precision
+    public List<SalesRollupResponse> top(SalesRollup.Granularity granularity, SalesRollup.Dimension dimension,
+                                         Instant from, Instant to, int limit) {
+        checkRange(from, to);
+        return rollupRepository.sumByKey(granularity, dimension, from, to, PageRequest.of(0, Math.max(1, limit))).stream()
+                .map(row -> {
+                    SalesRollupResponse response = new SalesRollupResponse();
+                    response.setDimension(dimension.name());
+                    response.setKey((String) row[0]);
+                    response.setLabel((String) row[1]);
+                    response.setRevenue(((Number) row[2]).doubleValue());
+                    response.setOrders(((Number) row[3]).longValue());
+                    response.setUnits(((Number) row[4]).longValue());
+                    return response;
+                })
+                .toList();
+    }
+
+    private void runBackfill() {
+        try {
+            boolean more = true;
+            while (more && !Thread.currentThread().isInterrupted()) {
+                more = Boolean.TRUE.equals(transactionTemplate.execute(tx -> backfillChunk()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Sales rollup backfill failed; it resumes at the next start or when started again", e);
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    // One chunk per transaction, holding the state row so completions of the chunk's orders wait for it
+    private boolean backfillChunk() {
+        SalesRollupState state = stateRepository.findForUpdate(SalesRollupState.SINGLETON_ID)
+                .orElseThrow(() -> new IllegalStateException("Sales rollup state is missing"));
+        if (state.getBackfillCompletedAt() != null) {
+            return false;
+        }
+        // archived orders are rolled up too, and seen once even if archived while the backfill runs
+        List<Long> orderIds = orderArchiveService.completedIdsAfter(state.getBackfillCursor(), chunkSize);
+        if (orderIds.isEmpty()) {
+            state.setBackfillCompletedAt(Instant.now());
+            log.info("Sales rollup backfill finished");
+            return false;
+        }
+        rollUp(orderArchiveService.saleLines(orderIds));
+        state.setBackfillCursor(orderIds.get(orderIds.size() - 1));
+        return true;
+    }
+
+    // Adds the orders of the findSaleLines rows to every bucket they fall in; runs in the caller's transaction
+    private void rollUp(List<Object[]> saleLines) {
+        Map<SalesRollup, SalesRollup> deltas = new TreeMap<>(BUCKET_ORDER);
+        double[] revenue = SaleLines.revenue(saleLines);
+        Long currentOrder = null;
+        Instant orderDate = null;
+        Set<String> countedKeys = new HashSet<>();
+        for (int i = 0; i < saleLines.size(); i++) {
+            Object[] row = saleLines.get(i);
+            Long orderId = (Long) row[0];
+            if (!orderId.equals(currentOrder)) {
+                currentOrder = orderId;
+                orderDate = row[1] != null ? (Instant) row[1] : Instant.now();
+                countedKeys.clear();
+                double totalPrice = row[2] != null ? ((Number) row[2]).doubleValue() : 0;
+                add(deltas, SalesRollup.Dimension.TOTAL, SalesRollup.TOTAL_KEY, null, orderDate, totalPrice, 1, 0);
+            }
+            if (row[8] == null) {
+                // an order without lines
+                continue;
+            }
+            long quantity = ((Number) row[8]).longValue();
+            double lineRevenue = revenue[i];
+            add(deltas, SalesRollup.Dimension.TOTAL, SalesRollup.TOTAL_KEY, null, orderDate, 0, 0, quantity);
+            if (row[3] != null) {
+                addLine(deltas, countedKeys, SalesRollup.Dimension.PRODUCT, row[3].toString(), (String) row[4], orderDate, lineRevenue, quantity);
+            }
+            if (row[5] != null) {
+                addLine(deltas, countedKeys, SalesRollup.Dimension.FACTORY, (String) row[5], (String) row[5], orderDate, lineRevenue, quantity);
+            }
+            if (row[6] != null) {
+                addLine(deltas, countedKeys, SalesRollup.Dimension.CATEGORY, row[6].toString(), (String) row[7], orderDate, lineRevenue, quantity);
+            }
+        }
+        rollupRepository.addAll(new ArrayList<>(deltas.values()));
+    }
+
+    // An order counts once per product, factory or category however many of its lines share it
+    private void addLine(Map<SalesRollup, SalesRollup> deltas, Set<String> countedKeys, SalesRollup.Dimension dimension,
+                         String key, String label, Instant orderDate, double revenue, long units) {
+        long orders = countedKeys.add(dimension + ":" + key) ? 1 : 0;
+        add(deltas, dimension, key, label, orderDate, revenue, orders, units);
+    }
+
+    private void add(Map<SalesRollup, SalesRollup> deltas, SalesRollup.Dimension dimension, String key, String label,
+                     Instant orderDate, double revenue, long orders, long units) {
+        for (SalesRollup.Granularity granularity : SalesRollup.Granularity.values()) {
+            SalesRollup probe = new SalesRollup();
+            probe.setGranularity(granularity);
+            probe.setDimension(dimension);
+            probe.setDimensionKey(key);
+            probe.setBucketStart(bucketStart(orderDate, granularity));
+            SalesRollup delta = deltas.computeIfAbsent(probe, k -> k);
+            if (label != null) {
+                delta.setLabel(label);
+            }
+            delta.setRevenue(delta.getRevenue() + revenue);
+            delta.setOrders(delta.getOrders() + orders);
+            delta.setUnits(delta.getUnits() + units);
+        }
+    }
+
+    private Instant bucketStart(Instant instant, SalesRollup.Granularity granularity) {
+        ZonedDateTime local = instant.atZone(zone);
+        return switch (granularity) {
+            case HOUR -> local.truncatedTo(ChronoUnit.HOURS).toInstant();
+            case DAY -> local.truncatedTo(ChronoUnit.DAYS).toInstant();
+        };
+    }
+
+    private static void checkRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new CommonException("from must be before to", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.sonnguyen.laptopshop.service;
 
+import com.sonnguyen.laptopshop.event.UserChangedEvent;
 import com.sonnguyen.laptopshop.exception.CommonException;
 import com.sonnguyen.laptopshop.model.Role;
 import com.sonnguyen.laptopshop.model.User;
 import com.sonnguyen.laptopshop.payload.request.UserRequest;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
 import com.sonnguyen.laptopshop.payload.response.UserResponse;
 import com.sonnguyen.laptopshop.repository.RoleRepository;
 import com.sonnguyen.laptopshop.repository.UserRepository;
+import com.sonnguyen.laptopshop.utils.KeysetCursor;
 import com.sonnguyen.laptopshop.utils.ModelMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -30,6 +36,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final String USER_NOT_FOUND = "User not found with id: ";
     private static final String USERNAME_EXISTS = "Username already exists: ";
@@ -41,6 +48,12 @@ public class UserService {
         return users.map(ModelMapper::toUserResponse);
     }
 
+    public CursorPageResponse<UserResponse> scrollUsers(Sort sort, String cursor, int size) {
+        KeysetCursor.checkSize(size);
+        List<User> rows = userRepository.findBy(KeysetCursor.after(cursor, sort), query -> query.sortBy(sort).limit(size + 1).all());
+        return KeysetCursor.toResponse(rows.stream().map(ModelMapper::toUserResponse).toList(), size, sort);
+    }
+
     public UserResponse getUserById(UUID id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new CommonException(USER_NOT_FOUND + id, HttpStatus.NOT_FOUND));
@@ -75,6 +88,7 @@ public class UserService {
                user.setRoles(new HashSet<>(roles));
 
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.created(savedUser.getId()));
         return convertToResponse(savedUser);
     }
 
@@ -119,6 +133,7 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new CommonException(USER_NOT_FOUND + id, HttpStatus.NOT_FOUND));
         userRepository.delete(user);
+        eventPublisher.publishEvent(UserChangedEvent.deleted(id));
     }
 
     public Page<UserResponse> searchUsers(String keyword, String role, Pageable pageable) {
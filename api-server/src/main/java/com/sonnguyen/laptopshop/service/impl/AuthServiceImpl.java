@@ -1,6 +1,7 @@
 package com.sonnguyen.laptopshop.service.impl;
 
 import com.sonnguyen.laptopshop.config.JwtService;
+import com.sonnguyen.laptopshop.event.UserChangedEvent;
 import com.sonnguyen.laptopshop.model.RefreshToken;
 import com.sonnguyen.laptopshop.model.PasswordResetToken;
 import com.sonnguyen.laptopshop.model.CustomUserDetails;
@@ -16,6 +17,7 @@ import com.sonnguyen.laptopshop.repository.RoleRepository;
 import com.sonnguyen.laptopshop.repository.UserRepository;
 import com.sonnguyen.laptopshop.service.AuthService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -46,6 +48,7 @@ public class AuthServiceImpl implements AuthService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final PasswordResetTokenRepository passwordResetTokenRepository;
     private final com.sonnguyen.laptopshop.service.EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Override
@@ -88,7 +91,8 @@ public class AuthServiceImpl implements AuthService {
                 .orElseThrow(() -> new CommonException("USER role not found", HttpStatus.INTERNAL_SERVER_ERROR));
         user.setRoles(Set.of(userRole));
         
-        userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.created(savedUser.getId()));
     }
 
     @Override
@@ -3,13 +3,13 @@ package com.sonnguyen.laptopshop.service.impl;
 import com.sonnguyen.laptopshop.model.Product;
 import com.sonnguyen.laptopshop.repository.ProductRepository;
 import com.sonnguyen.laptopshop.service.ExcelService;
+import com.sonnguyen.laptopshop.service.ProductImporter;
 import com.sonnguyen.laptopshop.utils.ExcelHelper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.io.File;
 import java.util.List;
 
 @Service
@@ -17,38 +17,14 @@ import java.util.List;
 public class ExcelServiceImpl implements ExcelService {
 
     private final ProductRepository productRepository;
-    private final com.sonnguyen.laptopshop.repository.CategoryRepository categoryRepository;
 
     @Override
-    public void save(MultipartFile file) {
-        try {
-            List<Product> products = ExcelHelper.excelToProducts(file.getInputStream());
-            
-            // Resolve categories
-            for (Product product : products) {
-                // Set default sold if null
-                if (product.getSold() == null) product.setSold(0L);
-                if (product.getImage() == null) product.setImage(""); 
-
-                if (product.getCategory() != null && product.getCategory().getName() != null) {
-                    String categoryName = product.getCategory().getName();
-                    com.sonnguyen.laptopshop.model.Category category = categoryRepository.findByName(categoryName)
-                            .orElseGet(() -> {
-                                com.sonnguyen.laptopshop.model.Category newCategory = new com.sonnguyen.laptopshop.model.Category();
-                                newCategory.setName(categoryName);
-                                newCategory.setDescription("Created via Excel Import"); // Default description
-                                // Generate slug roughly
-                                newCategory.setSlug(categoryName.toLowerCase().replace(" ", "-") + "-" + System.currentTimeMillis()); // Ensure uniqueness
-                                return categoryRepository.save(newCategory);
-                            });
-                    product.setCategory(category);
-                }
+    public ProductImporter.RowSource rowSource(File file) {
+        return consumer -> ExcelHelper.streamProductRows(file, (rowNumber, cells) -> {
+            if (!ExcelHelper.isBlankRow(cells)) {
+                consumer.accept(rowNumber, () -> ExcelHelper.rowToProduct(cells));
             }
-            
-            productRepository.saveAll(products);
-        } catch (IOException e) {
-            throw new RuntimeException("fail to store excel data: " + e.getMessage());
-        }
+        });
     }
 
     @Override
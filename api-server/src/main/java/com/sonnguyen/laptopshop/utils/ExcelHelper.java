@@ -1,17 +1,31 @@
 package com.sonnguyen.laptopshop.utils;
 
+import com.sonnguyen.laptopshop.model.Category;
 import com.sonnguyen.laptopshop.model.Product;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
 
 public class ExcelHelper {
     public static String TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
@@ -53,118 +67,143 @@ public class ExcelHelper {
         }
     }
 
-    public static List<Product> excelToProducts(InputStream is) {
-        try {
-            Workbook workbook = new XSSFWorkbook(is);
-
-            Sheet sheet = workbook.getSheet(SHEET);
-            if (sheet == null) {
-                // Try getting the first sheet if "Products" sheet doesn't exist
-                sheet = workbook.getSheetAt(0);
-            }
-            
-            Iterator<Row> rows = sheet.iterator();
-
-            List<Product> products = new ArrayList<>();
-
-            int rowNumber = 0;
-            while (rows.hasNext()) {
-                Row currentRow = rows.next();
-
-                // skip header
-                if (rowNumber == 0) {
-                    rowNumber++;
-                    continue;
-                }
+    @FunctionalInterface
+    public interface RowHandler {
+        // rowNumber is 1-based; cells has one slot per template column, blank cells as ""
+        void onRow(int rowNumber, String[] cells);
+    }
 
-                Iterator<Cell> cellsInRow = currentRow.iterator();
-
-                Product product = new Product();
-
-                // Use index based iteration to handle blank cells correctly
-                for (int cellIdx = 0; cellIdx < HEADERS.length; cellIdx++) {
-                   Cell currentCell = currentRow.getCell(cellIdx, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                   
-                    switch (cellIdx) {
-                    case 0:
-                        product.setName(getCellValueAsString(currentCell));
-                        break;
-                    case 1:
-                        product.setPrice(getCellValueAsDouble(currentCell));
-                        break;
-                    case 2:
-                        product.setImage(getCellValueAsString(currentCell));
-                        break;
-                    case 3:
-                        product.setDescription(getCellValueAsString(currentCell));
-                        break;
-                    case 4:
-                        product.setQuantity((long) getCellValueAsDouble(currentCell));
-                        break;
-                    case 5:
-                        product.setFactory(getCellValueAsString(currentCell));
-                        break;
-                    case 6:
-                        product.setTarget(getCellValueAsString(currentCell));
-                        break;
-                    case 7:
-                        String categoryName = getCellValueAsString(currentCell);
-                        if (categoryName != null && !categoryName.isEmpty()) {
-                            com.sonnguyen.laptopshop.model.Category category = new com.sonnguyen.laptopshop.model.Category();
-                            category.setName(categoryName);
-                            product.setCategory(category);
-                        }
-                        break;
-                    default:
-                        break;
+    // Streams the data rows of the products sheet (or the first sheet) through the XSSF SAX parser,
+    // so only the current row is held in memory regardless of the sheet size
+    public static void streamProductRows(File file, RowHandler handler) {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            InputStream selected = null;
+            while (sheets.hasNext()) {
+                InputStream sheet = sheets.next();
+                if (selected == null || SHEET.equalsIgnoreCase(sheets.getSheetName())) {
+                    if (selected != null) {
+                        selected.close();
                     }
+                    selected = sheet;
+                } else {
+                    sheet.close();
                 }
+            }
+            if (selected == null) {
+                throw new IllegalArgumentException("Workbook has no sheets");
+            }
 
-                // Only add if name is not empty
-                if (product.getName() != null && !product.getName().isEmpty()) {
-                    products.add(product);
-                }
+            try (InputStream sheet = selected) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), strings,
+                        new ProductRowCollector(handler), new RawNumberFormatter(), false));
+                parser.parse(new InputSource(sheet));
             }
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new RuntimeException("fail to parse Excel file: " + e.getMessage());
+        }
+    }
 
-            workbook.close();
+    // Maps one streamed row onto a product, rejecting values the Product constraints would reject
+    public static Product rowToProduct(String[] cells) {
+        Product product = new Product();
+        product.setName(required(cells[0], "Name"));
+        product.setPrice(parseNumber(cells[1], "Price"));
+        if (product.getPrice() <= 0) {
+            throw new IllegalArgumentException("Price must be greater than 0");
+        }
+        product.setImage(cells[2]);
+        product.setDescription(required(cells[3], "Description"));
+        double quantity = cells[4].isEmpty() ? 0 : parseNumber(cells[4], "Quantity");
+        if (quantity < 0 || quantity != Math.rint(quantity)) {
+            throw new IllegalArgumentException("Quantity must be a non-negative whole number");
+        }
+        product.setQuantity((long) quantity);
+        product.setSold(0L);
+        product.setFactory(cells[5].isEmpty() ? null : cells[5]);
+        product.setTarget(cells[6].isEmpty() ? null : cells[6]);
+        if (!cells[7].isEmpty()) {
+            Category category = new Category();
+            category.setName(cells[7]);
+            product.setCategory(category);
+        }
+        return product;
+    }
 
-            return products;
-        } catch (IOException e) {
-            throw new RuntimeException("fail to parse Excel file: " + e.getMessage());
+    public static boolean isBlankRow(String[] cells) {
+        return Arrays.stream(cells).allMatch(String::isEmpty);
+    }
+
+    private static String required(String value, String column) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(column + " is required");
         }
+        return value;
     }
-    
-    private static String getCellValueAsString(Cell cell) {
-        if (cell == null) return "";
+
+    private static double parseNumber(String value, String column) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(column + " is required");
+        }
+        double number;
         try {
-            switch (cell.getCellType()) {
-                case STRING:
-                    return cell.getStringCellValue();
-                case NUMERIC:
-                    return String.valueOf(cell.getNumericCellValue());
-                case BOOLEAN:
-                    return String.valueOf(cell.getBooleanCellValue());
-                default:
-                    return "";
+            number = Double.parseDouble(value.replace(",", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a number: " + value);
+        }
+        // parseDouble also takes "NaN", "Infinity" and overflowing values such as 1e999
+        if (!Double.isFinite(number)) {
+            throw new IllegalArgumentException(column + " is not a number: " + value);
+        }
+        return number;
+    }
+
+    private static class ProductRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private String[] cells;
+        private int nextColumn;
+
+        ProductRowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new String[HEADERS.length];
+            Arrays.fill(cells, "");
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // skip header
+            if (rowNum > 0) {
+                handler.onRow(rowNum + 1, cells);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            nextColumn = column + 1;
+            if (column < cells.length && formattedValue != null) {
+                cells[column] = formattedValue.trim();
             }
-        } catch (Exception e) {
-            return "";
         }
     }
-    
-    private static double getCellValueAsDouble(Cell cell) {
-        if (cell == null) return 0;
-        try {
-            switch (cell.getCellType()) {
-                case NUMERIC:
-                    return cell.getNumericCellValue();
-                case STRING:
-                    return Double.parseDouble(cell.getStringCellValue());
-                default:
-                    return 0;
+
+    // Keeps numbers as typed (no thousands separators or rounding from the cell format); dates stay formatted
+    private static class RawNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString)) {
+                return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
             }
-        } catch (Exception e) {
-            return 0;
+            return NumberToTextConverter.toText(value);
         }
     }
 }
@@ -0,0 +1,83 @@
+package com.sonnguyen.laptopshop.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+// Group commit for an append-only log file. Writers append under the log's own lock without syncing,
+// take a position from written() while still holding it, and then wait in await() until that
+// position is on disk. A waiter that finds no sync running starts one for everything written so far;
+// the others wait for it, so concurrent appends share one fsync instead of paying one each.
+public class GroupCommit {
+
+    @FunctionalInterface
+    public interface Sync {
+        void sync() throws IOException;
+    }
+
+    private final Object monitor = new Object();
+    private long written;
+    private long synced;
+    private boolean syncing;
+
+    // Position of the entry just appended; call under the log's lock so positions follow file order
+    public long written() {
+        synchronized (monitor) {
+            return ++written;
+        }
+    }
+
+    // Everything written so far is durable, e.g. after the log was rewritten and forced as a whole
+    public void markSynced() {
+        synchronized (monitor) {
+            synced = written;
+            monitor.notifyAll();
+        }
+    }
+
+    public boolean isSynced(long position) {
+        synchronized (monitor) {
+            return synced >= position;
+        }
+    }
+
+    // Returns once position is on disk. Throws if the sync that would have covered it failed.
+    public void await(long position, Sync sync) throws IOException {
+        long target;
+        synchronized (monitor) {
+            while (synced < position && syncing) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the log to sync");
+                }
+            }
+            if (synced >= position) {
+                return;
+            }
+            syncing = true;
+            target = written;
+        }
+
+        boolean done = false;
+        try {
+            sync.sync();
+            done = true;
+        } catch (IOException e) {
+            synchronized (monitor) {
+                // a rewrite may have swapped the file under the sync and made the position durable anyway
+                if (synced < position) {
+                    throw e;
+                }
+            }
+        } finally {
+            synchronized (monitor) {
+                syncing = false;
+                if (done) {
+                    synced = Math.max(synced, target);
+                }
+                monitor.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.sonnguyen.laptopshop.utils;
+
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Opaque continuation token for keyset pagination. The token carries the sort it was issued for
+// and the type-tagged key values of the last row, e.g. "price:DESC,id:DESC|price=D:1999.0|id=L:42".
+public class KeysetCursor {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String INVALID_CURSOR = "Invalid cursor";
+    // largest page a scroll endpoint serves
+    public static final int MAX_SIZE = 100;
+
+    private KeysetCursor() {
+        // Utility class
+    }
+
+    public static void checkSize(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new CommonException("size must be between 1 and " + MAX_SIZE, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Rows after the cursor in sort order; a blank cursor matches every row. Keys may be null: NULLs
+    // sort first ascending and last descending, as MySQL orders them. Query with limit size + 1 and
+    // pass the rows to toResponse.
+    public static <T> Specification<T> after(String cursor, Sort sort) {
+        Map<String, Object> keys = decode(cursor, sort);
+        if (keys.isEmpty()) {
+            return Specification.where(null);
+        }
+        return (root, query, criteriaBuilder) -> {
+            List<Predicate> alternatives = new ArrayList<>();
+            List<Predicate> equalSoFar = new ArrayList<>();
+            for (Sort.Order order : sort) {
+                Path<Comparable<Object>> path = root.get(order.getProperty());
+                Object value = keys.get(order.getProperty());
+                Predicate beyond = beyond(criteriaBuilder, path, value, order.isAscending());
+                if (beyond != null) {
+                    List<Predicate> alternative = new ArrayList<>(equalSoFar);
+                    alternative.add(beyond);
+                    alternatives.add(criteriaBuilder.and(alternative.toArray(Predicate[]::new)));
+                }
+                equalSoFar.add(value == null ? criteriaBuilder.isNull(path) : criteriaBuilder.equal(path, value));
+            }
+            return criteriaBuilder.or(alternatives.toArray(Predicate[]::new));
+        };
+    }
+
+    // rows holds up to size + 1 items in sort order; the extra one only tells that there is a next page
+    public static <T> CursorPageResponse<T> toResponse(List<T> rows, int size, Sort sort) {
+        boolean hasNext = rows.size() > size;
+        return toResponse(hasNext ? rows.subList(0, size) : rows, hasNext, sort);
+    }
+
+    // For a page assembled from several queries: the next cursor is read from the sort properties of
+    // the last item, which must have them under the same names as the entities
+    public static <T> CursorPageResponse<T> toResponse(List<T> content, boolean hasNext, Sort sort) {
+        CursorPageResponse<T> response = new CursorPageResponse<>();
+        response.setContent(content);
+        response.setSize(content.size());
+        response.setHasNext(hasNext);
+        if (hasNext && !content.isEmpty()) {
+            BeanWrapper last = new BeanWrapperImpl(content.get(content.size() - 1));
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (Sort.Order order : sort) {
+                keys.put(order.getProperty(), last.getPropertyValue(order.getProperty()));
+            }
+            response.setNextCursor(encode(keys, sort));
+        }
+        return response;
+    }
+
+    private static String encode(Map<String, Object> keys, Sort sort) {
+        StringBuilder token = new StringBuilder(describe(sort));
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            token.append('|').append(key.getKey()).append('=').append(encodeValue(key.getValue()));
+        }
+        return ENCODER.encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A blank cursor starts from the first row
+    private static Map<String, Object> decode(String cursor, Sort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return Map.of();
+        }
+        String[] parts;
+        try {
+            parts = new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split("\\|");
+        } catch (IllegalArgumentException e) {
+            throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+        }
+        if (!describe(sort).equals(parts[0])) {
+            throw new CommonException("Cursor does not match the requested sort", HttpStatus.BAD_REQUEST);
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (int i = 1; i < parts.length; i++) {
+            int separator = parts[i].indexOf('=');
+            if (separator <= 0) {
+                throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+            }
+            String property = parts[i].substring(0, separator);
+            if (sort.getOrderFor(property) == null) {
+                throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+            }
+            keys.put(property, decodeValue(parts[i].substring(separator + 1)));
+        }
+        if (keys.size() != sort.stream().count()) {
+            throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+        }
+        return keys;
+    }
+
+    // Rows strictly past value in one sort column, or null when none can be
+    @SuppressWarnings("unchecked")
+    private static Predicate beyond(CriteriaBuilder criteriaBuilder, Expression<Comparable<Object>> path, Object value,
+                                    boolean ascending) {
+        if (value == null) {
+            return ascending ? criteriaBuilder.isNotNull(path) : null;
+        }
+        Comparable<Object> key = (Comparable<Object>) value;
+        return ascending
+                ? criteriaBuilder.greaterThan(path, key)
+                : criteriaBuilder.or(criteriaBuilder.lessThan(path, key), criteriaBuilder.isNull(path));
+    }
+
+    private static String describe(Sort sort) {
+        StringBuilder description = new StringBuilder();
+        for (Sort.Order order : sort) {
+            if (!description.isEmpty()) {
+                description.append(',');
+            }
+            description.append(order.getProperty()).append(':').append(order.getDirection());
+        }
+        return description.toString();
+    }
+
+    private static String encodeValue(Object value) {
+        if (value == null) {
+            return "N:";
+        }
+        if (value instanceof Long) {
+            return "L:" + value;
+        }
+        if (value instanceof Double) {
+            return "D:" + value;
+        }
+        if (value instanceof Instant) {
+            return "T:" + value;
+        }
+        if (value instanceof UUID) {
+            return "U:" + value;
+        }
+        if (value instanceof String text) {
+            return "S:" + ENCODER.encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+        throw new IllegalArgumentException("Unsupported keyset value: " + value);
+    }
+
+    private static Object decodeValue(String encoded) {
+        if (encoded.length() < 2 || encoded.charAt(1) != ':') {
+            throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+        }
+        String value = encoded.substring(2);
+        try {
+            return switch (encoded.charAt(0)) {
+                case 'N' -> null;
+                case 'L' -> Long.valueOf(value);
+                case 'D' -> Double.valueOf(value);
+                case 'T' -> Instant.parse(value);
+                case 'U' -> UUID.fromString(value);
+                case 'S' -> new String(DECODER.decode(value), StandardCharsets.UTF_8);
+                default -> throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+            };
+        } catch (RuntimeException e) {
+            if (e instanceof CommonException) {
+                throw e;
+            }
+            throw new CommonException(INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+        }
+    }
+}
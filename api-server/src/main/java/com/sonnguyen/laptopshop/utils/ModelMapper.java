@@ -39,6 +39,7 @@ public class ModelMapper {
         response.setTarget(product.getTarget());
         response.setCreatedAt(product.getCreatedAt());
         response.setUpdatedAt(product.getUpdatedAt());
+        response.setVersion(product.getVersion());
         
         // Map category information
         if (product.getCategory() != null) {
@@ -87,6 +88,8 @@ public class ModelMapper {
         OrderResponse response = new OrderResponse();
         response.setId(order.getId());
         response.setTotalPrice(order.getTotalPrice());
+        response.setCouponCode(order.getCouponCode());
+        response.setDiscountAmount(order.getDiscountAmount());
         response.setReceiverName(order.getReceiverName());
         response.setReceiverAddress(order.getReceiverAddress());
         response.setReceiverPhone(order.getReceiverPhone());
@@ -105,6 +108,24 @@ public class ModelMapper {
         return response;
     }
 
+    // Same as above with the lines already loaded, so the lazy orderDetails collection is not touched
+    public static OrderResponse toOrderResponse(Order order, List<OrderDetail> orderDetails) {
+        OrderResponse response = new OrderResponse();
+        response.setId(order.getId());
+        response.setTotalPrice(order.getTotalPrice());
+        response.setCouponCode(order.getCouponCode());
+        response.setDiscountAmount(order.getDiscountAmount());
+        response.setReceiverName(order.getReceiverName());
+        response.setReceiverAddress(order.getReceiverAddress());
+        response.setReceiverPhone(order.getReceiverPhone());
+        response.setStatus(order.getStatus());
+        response.setOrderDate(order.getOrderDate());
+        response.setCreatedAt(order.getCreatedAt());
+        response.setUpdatedAt(order.getUpdatedAt());
+        response.setOrderDetails(orderDetails.stream().map(ModelMapper::toOrderDetailResponse).toList());
+        return response;
+    }
+
     public static OrderDetailResponse toOrderDetailResponse(OrderDetail orderDetail) {
         OrderDetailResponse response = new OrderDetailResponse();
         response.setId(orderDetail.getId());
@@ -120,6 +141,36 @@ public class ModelMapper {
         return response;
     }
 
+    public static OrderResponse toOrderResponse(ArchivedOrder order, List<ArchivedOrderDetail> orderDetails) {
+        OrderResponse response = new OrderResponse();
+        response.setId(order.getId());
+        response.setTotalPrice(order.getTotalPrice());
+        response.setCouponCode(order.getCouponCode());
+        response.setDiscountAmount(order.getDiscountAmount());
+        response.setReceiverName(order.getReceiverName());
+        response.setReceiverAddress(order.getReceiverAddress());
+        response.setReceiverPhone(order.getReceiverPhone());
+        response.setStatus(order.getStatus());
+        response.setOrderDate(order.getOrderDate());
+        response.setCreatedAt(order.getCreatedAt());
+        response.setUpdatedAt(order.getUpdatedAt());
+        response.setOrderDetails(orderDetails.stream().map(ModelMapper::toOrderDetailResponse).toList());
+        return response;
+    }
+
+    public static OrderDetailResponse toOrderDetailResponse(ArchivedOrderDetail orderDetail) {
+        OrderDetailResponse response = new OrderDetailResponse();
+        response.setId(orderDetail.getId());
+        response.setQuantity(orderDetail.getQuantity());
+        response.setPrice(orderDetail.getPrice());
+        response.setCreatedAt(orderDetail.getCreatedAt());
+        response.setUpdatedAt(orderDetail.getUpdatedAt());
+        if (orderDetail.getProduct() != null) {
+            response.setProduct(toProductResponse(orderDetail.getProduct()));
+        }
+        return response;
+    }
+
     // User mappings
     public static UserResponse toUserResponse(User user) {
         UserResponse response = new UserResponse();
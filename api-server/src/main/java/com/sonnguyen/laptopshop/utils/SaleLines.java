@@ -0,0 +1,40 @@
+package com.sonnguyen.laptopshop.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Rows of OrderRepository.findSaleLines: (order id, order date, total price, product id, product name,
+// factory, category id, category name, quantity, price, target). Revenue everywhere in the reports is
+// what orders were charged, i.e. totalPrice after coupon discounts; a line gets the share of its
+// order's totalPrice that its quantity * price is of the order's list value, so the lines of an
+// order add up to its totalPrice.
+public class SaleLines {
+
+    private SaleLines() {
+        // Utility class
+    }
+
+    // Revenue of each row, by index; 0 for rows without a line
+    public static double[] revenue(List<Object[]> rows) {
+        Map<Long, Double> listValues = new HashMap<>();
+        for (Object[] row : rows) {
+            listValues.merge((Long) row[0], listValue(row), Double::sum);
+        }
+        double[] revenue = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            double orderListValue = listValues.get((Long) row[0]);
+            double totalPrice = row[2] != null ? ((Number) row[2]).doubleValue() : 0;
+            revenue[i] = orderListValue > 0 ? totalPrice * listValue(row) / orderListValue : 0;
+        }
+        return revenue;
+    }
+
+    private static double listValue(Object[] row) {
+        if (row[8] == null || row[9] == null) {
+            return 0;
+        }
+        return ((Number) row[8]).longValue() * ((Number) row[9]).doubleValue();
+    }
+}
@@ -0,0 +1,29 @@
+package com.sonnguyen.laptopshop.utils;
+
+import com.sonnguyen.laptopshop.exception.CommonException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+
+import java.util.Set;
+
+// Whitelisted sortBy values per listing. Keyset cursors order NULLs in them the way MySQL does.
+public class SortFields {
+
+    public static final Set<String> PRODUCT = Set.of("id", "name", "price", "quantity", "sold", "createdAt");
+    public static final Set<String> ORDER = Set.of("id", "orderDate", "totalPrice", "createdAt");
+    public static final Set<String> USER = Set.of("id", "username", "createdAt");
+
+    private SortFields() {
+        // Utility class
+    }
+
+    // Builds the sort for a listing; non-id sorts get id as a tie-breaker so the order is total
+    public static Sort resolve(Set<String> allowed, String sortBy, String sortDir) {
+        if (!allowed.contains(sortBy)) {
+            throw new CommonException("Unsupported sortBy: " + sortBy + ". Allowed: " + allowed, HttpStatus.BAD_REQUEST);
+        }
+        Sort.Direction direction = "desc".equalsIgnoreCase(sortDir) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = Sort.by(direction, sortBy);
+        return "id".equals(sortBy) ? sort : sort.and(Sort.by(direction, "id"));
+    }
+}
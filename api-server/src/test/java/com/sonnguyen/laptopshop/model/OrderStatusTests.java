@@ -0,0 +1,56 @@
+package com.sonnguyen.laptopshop.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStatusTests {
+
+    @Test
+    void allowsOnlyTheListedTransitions() {
+        assertTrue(OrderStatus.PENDING.canTransitionTo(OrderStatus.PROCESSING));
+        assertTrue(OrderStatus.PENDING.canTransitionTo(OrderStatus.CANCELLED));
+        assertFalse(OrderStatus.PENDING.canTransitionTo(OrderStatus.SHIPPED));
+        assertFalse(OrderStatus.PENDING.canTransitionTo(OrderStatus.COMPLETED));
+
+        assertTrue(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.SHIPPED));
+        assertTrue(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.COMPLETED));
+        assertTrue(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.CANCELLED));
+        assertFalse(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.PENDING));
+
+        assertTrue(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.COMPLETED));
+        assertFalse(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.CANCELLED));
+
+        for (OrderStatus next : OrderStatus.values()) {
+            assertFalse(OrderStatus.COMPLETED.canTransitionTo(next));
+            assertFalse(OrderStatus.CANCELLED.canTransitionTo(next));
+        }
+    }
+
+    @Test
+    void finalStatusesAreCompletedAndCancelled() {
+        for (OrderStatus status : OrderStatus.values()) {
+            assertEquals(status == OrderStatus.COMPLETED || status == OrderStatus.CANCELLED, status.isFinal(), status.name());
+        }
+    }
+
+    @Test
+    void sourcesOfInvertsTheTable() {
+        assertEquals(EnumSet.of(OrderStatus.PENDING, OrderStatus.PROCESSING), OrderStatus.sourcesOf(OrderStatus.CANCELLED));
+        assertEquals(EnumSet.of(OrderStatus.PROCESSING, OrderStatus.SHIPPED), OrderStatus.sourcesOf(OrderStatus.COMPLETED));
+        assertEquals(EnumSet.of(OrderStatus.PROCESSING), OrderStatus.sourcesOf(OrderStatus.SHIPPED));
+        assertTrue(OrderStatus.sourcesOf(OrderStatus.PENDING).isEmpty());
+    }
+
+    @Test
+    void parsesNamesLeniently() {
+        assertEquals(Optional.of(OrderStatus.SHIPPED), OrderStatus.parse(" shipped "));
+        assertEquals(Optional.empty(), OrderStatus.parse("LOST"));
+        assertEquals(Optional.empty(), OrderStatus.parse(null));
+    }
+}
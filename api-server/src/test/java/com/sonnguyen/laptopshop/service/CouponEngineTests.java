@@ -0,0 +1,201 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.event.CouponChangedEvent;
+import com.sonnguyen.laptopshop.exception.CommonException;
+import com.sonnguyen.laptopshop.model.Coupon;
+import com.sonnguyen.laptopshop.repository.CouponRedemptionRepository;
+import com.sonnguyen.laptopshop.repository.CouponRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CouponEngineTests {
+
+    private static final String CODE = "SALE10";
+
+    private final CouponRepository couponRepository = mock(CouponRepository.class);
+    private final CouponRedemptionRepository redemptionRepository = mock(CouponRedemptionRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final Coupon coupon = new Coupon();
+
+    @BeforeEach
+    void setUp() {
+        coupon.setId(UUID.randomUUID());
+        coupon.setCode(CODE);
+        coupon.setDiscountAmount(10.0);
+        when(couponRepository.findByActiveTrue()).thenReturn(List.of(coupon));
+        when(redemptionRepository.countByCoupon()).thenReturn(List.of());
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        beginTransaction();
+    }
+
+    @AfterEach
+    void tearDown() {
+        endTransaction();
+    }
+
+    @Test
+    void couponCapStopsFurtherRedemptions() {
+        coupon.setMaxUses(2);
+        CouponEngine engine = startedEngine();
+
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+        CommonException e = assertThrows(CommonException.class, () -> engine.redeem(CODE, UUID.randomUUID(), 100));
+        assertEquals("Coupon usage limit reached", e.getMessage());
+    }
+
+    @Test
+    void userCapIsPerUser() {
+        coupon.setMaxUsesPerUser(1);
+        CouponEngine engine = startedEngine();
+        UUID user = UUID.randomUUID();
+
+        engine.redeem(CODE, user, 100);
+        assertThrows(CommonException.class, () -> engine.redeem(CODE, user, 100));
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+    }
+
+    @Test
+    void userCapRejectionDoesNotUseUpTheCoupon() {
+        coupon.setMaxUses(2);
+        coupon.setMaxUsesPerUser(1);
+        CouponEngine engine = startedEngine();
+        UUID user = UUID.randomUUID();
+
+        engine.redeem(CODE, user, 100);
+        assertThrows(CommonException.class, () -> engine.redeem(CODE, user, 100));
+        // the rejected attempt took no use of the coupon, so one is still left
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+    }
+
+    @Test
+    void uncappedCouponKeepsNoPerUserCounts() {
+        CouponEngine engine = startedEngine();
+
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+        verify(redemptionRepository, never()).countByCouponIdAndUserId(any(), any());
+    }
+
+    @Test
+    void deactivatedCouponDropsItsPerUserCounts() {
+        coupon.setMaxUsesPerUser(1);
+        CouponEngine engine = startedEngine();
+        UUID user = UUID.randomUUID();
+        engine.redeem(CODE, user, 100);
+
+        when(couponRepository.findByActiveTrue()).thenReturn(List.of());
+        engine.onCouponChanged(new CouponChangedEvent(CODE));
+        when(couponRepository.findByActiveTrue()).thenReturn(List.of(coupon));
+        engine.onCouponChanged(new CouponChangedEvent(CODE));
+
+        // the count is read back from coupon_redemptions rather than kept from before
+        when(redemptionRepository.countByCouponIdAndUserId(coupon.getId(), user)).thenReturn(1L);
+        assertThrows(CommonException.class, () -> engine.redeem(CODE, user, 100));
+        verify(redemptionRepository, times(2)).countByCouponIdAndUserId(coupon.getId(), user);
+    }
+
+    @Test
+    void rolledBackRedemptionGivesItsUseBack() {
+        coupon.setMaxUses(1);
+        coupon.setMaxUsesPerUser(1);
+        CouponEngine engine = startedEngine();
+        UUID user = UUID.randomUUID();
+
+        engine.redeem(CODE, user, 100);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        beginTransaction();
+        engine.redeem(CODE, user, 100);
+    }
+
+    @Test
+    void committedRedemptionKeepsItsUse() {
+        coupon.setMaxUses(1);
+        CouponEngine engine = startedEngine();
+
+        engine.redeem(CODE, UUID.randomUUID(), 100);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        beginTransaction();
+        assertThrows(CommonException.class, () -> engine.redeem(CODE, UUID.randomUUID(), 100));
+    }
+
+    @Test
+    void concurrentRedemptionsNeverExceedTheCap() throws InterruptedException {
+        int cap = 25;
+        int attempts = 200;
+        coupon.setMaxUses(cap);
+        CouponEngine engine = startedEngine();
+
+        AtomicInteger redeemed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < attempts; i++) {
+            threads.execute(() -> {
+                beginTransaction();
+                try {
+                    start.await();
+                    engine.redeem(CODE, UUID.randomUUID(), 100);
+                    redeemed.incrementAndGet();
+                } catch (CommonException | InterruptedException e) {
+                    // over the cap
+                } finally {
+                    endTransaction();
+                }
+            });
+        }
+        start.countDown();
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(cap, redeemed.get());
+    }
+
+    private CouponEngine startedEngine() {
+        CouponEngine engine = new CouponEngine(couponRepository, redemptionRepository, transactionTemplate);
+        engine.start();
+        return engine;
+    }
+
+    // Stands in for the order's transaction on the current thread
+    private static void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        endTransaction();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private static void endTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clear();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.sonnguyen.laptopshop.service;
+
+import com.sonnguyen.laptopshop.model.Category;
+import com.sonnguyen.laptopshop.model.Product;
+import com.sonnguyen.laptopshop.payload.response.CursorPageResponse;
+import com.sonnguyen.laptopshop.payload.response.ProductResponse;
+import com.sonnguyen.laptopshop.repository.CategoryRepository;
+import com.sonnguyen.laptopshop.repository.ProductRepository;
+import com.sonnguyen.laptopshop.utils.SortFields;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Transactional
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProductListingQueryCountTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void seed() {
+        for (int c = 0; c < 3; c++) {
+            Category category = new Category();
+            category.setName("Listing test category " + c);
+            category.setSlug("listing-test-category-" + c + "-" + System.nanoTime());
+            category.setDescription("Listing test category");
+            categoryRepository.save(category);
+
+            for (int i = 0; i < 10; i++) {
+                Product product = new Product();
+                product.setName("Listing test product " + c + "-" + i);
+                product.setPrice(1000.0 + i);
+                product.setDescription("Listing test description");
+                product.setQuantity(5L);
+                product.setFactory("Dell");
+                product.setTarget("Office");
+                product.setCategory(category);
+                productRepository.save(product);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void catalogPageUsesConstantNumberOfStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        productService.getAllProducts(PageRequest.of(0, 5));
+        long smallPage = statistics.getPrepareStatementCount();
+
+        entityManager.clear();
+        statistics.clear();
+        productService.getAllProducts(PageRequest.of(0, 25));
+        long largePage = statistics.getPrepareStatementCount();
+
+        // one listing SELECT (category joined in) plus at most one COUNT, whatever the page size
+        assertEquals(smallPage, largePage);
+        assertEquals(2, largePage);
+    }
+
+    @Test
+    void scrollPageIsOneStatement() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Sort sort = SortFields.resolve(SortFields.PRODUCT, "sold", "desc");
+
+        statistics.clear();
+        CursorPageResponse<ProductResponse> first = productService.scrollProducts(null, sort, null, 20);
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        // the next page is one SELECT too: no COUNT, no per-row category load
+        entityManager.clear();
+        statistics.clear();
+        productService.scrollProducts(null, sort, first.getNextCursor(), 20);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -35,6 +35,7 @@ const Orders = () => {
     total: 0
   });
   const [statusFilter, setStatusFilter] = useState('ALL');
+  const [selectedRowKeys, setSelectedRowKeys] = useState([]);
 
   // Mock data
   useEffect(() => {
@@ -106,6 +107,22 @@ const Orders = () => {
     }
   };
 
+  const handleBulkStatusChange = async (newStatus) => {
+    try {
+      const result = await orderService.bulkUpdateStatus({ ids: selectedRowKeys, status: newStatus });
+      if (result.rejected > 0) {
+        message.warning(`${result.applied} orders updated, ${result.rejected} can't move to ${newStatus}`);
+      } else {
+        message.success(`${result.applied} orders updated`);
+      }
+      setSelectedRowKeys([]);
+      fetchOrders(pagination.current - 1, pagination.pageSize, statusFilter);
+    } catch (error) {
+      console.error('Failed to update order statuses:', error);
+      message.error('Failed to update order statuses');
+    }
+  };
+
   const handleTableChange = (pagination) => {
     fetchOrders(pagination.current - 1, pagination.pageSize, statusFilter);
   };
@@ -129,6 +146,7 @@ const Orders = () => {
     switch (status) {
       case 'PENDING': return <Badge status="warning" text="Pending" />;
       case 'PROCESSING': return <Badge status="processing" text="Processing" />;
+      case 'SHIPPED': return <Badge status="processing" text="Shipped" />;
       case 'COMPLETED': return <Badge status="success" text="Completed" />;
       case 'CANCELLED': return <Badge status="error" text="Cancelled" />;
       default: return <Badge status="default" text={status} />;
@@ -245,6 +263,15 @@ const Orders = () => {
             </>
           )}
           {record.status === 'PROCESSING' && (
+            <Button
+              type="primary"
+              icon={<CheckOutlined />}
+              onClick={() => handleStatusChange(record.id, 'SHIPPED')}
+            >
+              Ship
+            </Button>
+          )}
+          {(record.status === 'PROCESSING' || record.status === 'SHIPPED') && (
             <Button
               type="primary"
               icon={<CheckOutlined />}
@@ -269,18 +296,34 @@ const Orders = () => {
           marginBottom: 16
         }}>
           <Title level={2} style={{ margin: 0 }}>Orders Management</Title>
-          <Select
-            value={statusFilter}
-            onChange={handleStatusFilterChange}
-            style={{ width: 150 }}
-            placeholder="Filter by status"
-          >
-            <Option value="ALL">All Orders</Option>
-            <Option value="PENDING">Pending</Option>
-            <Option value="PROCESSING">Processing</Option>
-            <Option value="COMPLETED">Completed</Option>
-            <Option value="CANCELLED">Cancelled</Option>
-          </Select>
+          <Space>
+            {selectedRowKeys.length > 0 && (
+              <Select
+                value={null}
+                onChange={handleBulkStatusChange}
+                style={{ width: 200 }}
+                placeholder={`Move ${selectedRowKeys.length} selected to...`}
+              >
+                <Option value="PROCESSING">Processing</Option>
+                <Option value="SHIPPED">Shipped</Option>
+                <Option value="COMPLETED">Completed</Option>
+                <Option value="CANCELLED">Cancelled</Option>
+              </Select>
+            )}
+            <Select
+              value={statusFilter}
+              onChange={handleStatusFilterChange}
+              style={{ width: 150 }}
+              placeholder="Filter by status"
+            >
+              <Option value="ALL">All Orders</Option>
+              <Option value="PENDING">Pending</Option>
+              <Option value="PROCESSING">Processing</Option>
+              <Option value="SHIPPED">Shipped</Option>
+              <Option value="COMPLETED">Completed</Option>
+              <Option value="CANCELLED">Cancelled</Option>
+            </Select>
+          </Space>
         </div>
 
         <Table
@@ -288,6 +331,7 @@ const Orders = () => {
           dataSource={orders}
           loading={loading}
           rowKey="id"
+          rowSelection={{ selectedRowKeys, onChange: setSelectedRowKeys }}
           pagination={{
             current: pagination.current,
             pageSize: pagination.pageSize,
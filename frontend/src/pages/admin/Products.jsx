@@ -149,10 +149,16 @@ const Products = () => {
     setModalVisible(true);
   };
 
-  const handleEdit = (record) => {
-    setEditingProduct(record);
-    form.setFieldsValue(record);
-    setModalVisible(true);
+  const handleEdit = async (record) => {
+    // Listing rows omit the description, so load the full product before editing
+    try {
+      const product = await productService.getById(record.id);
+      setEditingProduct(product);
+      form.setFieldsValue(product);
+      setModalVisible(true);
+    } catch (error) {
+      message.error('Failed to load product');
+    }
   };
 
   const handleDelete = async (id) => {
@@ -192,6 +198,9 @@ const Products = () => {
       if (editingProduct && !imageFile) {
         productData.image = editingProduct.image;
       }
+      if (editingProduct) {
+        productData.version = editingProduct.version;
+      }
 
       formData.append('product', JSON.stringify(productData));
 
@@ -210,7 +219,11 @@ const Products = () => {
       fetchProducts(pagination.current, pagination.pageSize);
     } catch (error) {
       console.error('Failed to save product:', error);
-      message.error('Failed to save product');
+      if (error.response?.status === 409) {
+        message.error('This product was changed by someone else. Reopen it and try again.');
+      } else {
+        message.error('Failed to save product');
+      }
     } finally {
       setSubmitLoading(false);
     }
@@ -302,8 +315,20 @@ const Products = () => {
   const submitImport = async () => {
     setImportLoading(true);
     try {
-      await productService.bulkCreateJSON(importData);
-      message.success(`Successfully imported ${importData.length} products`);
+      let job = await productService.bulkCreateJSON(importData);
+      // the import runs as a background job; poll until it finishes
+      while (job.status === 'QUEUED' || job.status === 'RUNNING') {
+        await new Promise((resolve) => setTimeout(resolve, 1000));
+        job = await productService.getImportJob(job.id);
+      }
+      if (job.status === 'FAILED') {
+        throw new Error(job.error);
+      }
+      if (job.failedRows > 0) {
+        message.warning(`Imported ${job.importedRows} products, ${job.failedRows} rows failed`);
+      } else {
+        message.success(`Successfully imported ${job.importedRows} products`);
+      }
       setImportModalVisible(false);
       setImportData([]);
       fetchProducts(1, pagination.pageSize);
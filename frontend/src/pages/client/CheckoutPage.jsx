@@ -15,6 +15,15 @@ const CheckoutPage = () => {
     const navigate = useNavigate();
     const [form] = Form.useForm();
     const [loading, setLoading] = useState(false);
+    // applied on the cart page; the server checks it again and computes the discount
+    const [coupon] = useState(() => {
+        try {
+            return JSON.parse(localStorage.getItem('coupon'));
+        } catch {
+            return null;
+        }
+    });
+    const discount = coupon ? Math.min(coupon.discountAmount || 0, totalPrice) : 0;
 
     useEffect(() => {
         if (cartItems.length === 0) {
@@ -43,7 +52,8 @@ const CheckoutPage = () => {
                 cartItems: cartItems.map(item => ({
                     productId: parseInt(item.id),
                     quantity: parseInt(item.quantity)
-                }))
+                })),
+                couponCode: coupon?.code
             };
 
             console.log('Sending order data:', orderData);
@@ -55,6 +65,7 @@ const CheckoutPage = () => {
 
             if (response.status === 201 && response.data) {
                 message.success('Order placed successfully!');
+                localStorage.removeItem('coupon');
                 await clearCart();
                 navigate('/orders');
             } else {
@@ -264,13 +275,19 @@ const CheckoutPage = () => {
                                 <Text>Subtotal:</Text>
                                 <Text>{formatPrice(totalPrice)}</Text>
                             </div>
+                            {discount > 0 && (
+                                <div style={{ display: 'flex', justifyContent: 'space-between', marginBottom: '8px' }}>
+                                    <Text>Coupon ({coupon.code}):</Text>
+                                    <Text type="success">-{formatPrice(discount)}</Text>
+                                </div>
+                            )}
                             <div style={{ display: 'flex', justifyContent: 'space-between', marginBottom: '8px' }}>
                                 <Text>Shipping:</Text>
                                 <Text>{formatPrice(0)}</Text>
                             </div>
                             <div style={{ display: 'flex', justifyContent: 'space-between', fontWeight: 'bold', fontSize: '16px' }}>
                                 <Text strong>Total:</Text>
-                                <Text strong>{formatPrice(totalPrice)}</Text>
+                                <Text strong>{formatPrice(totalPrice - discount)}</Text>
                             </div>
                         </div>
                     </Card>
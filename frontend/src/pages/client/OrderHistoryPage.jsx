@@ -1,6 +1,6 @@
 import React, { useState, useEffect } from 'react';
 import { formatPrice } from '@/utils/format';
-import { Table, Tag, Button, Typography, Card, Modal, Descriptions } from 'antd';
+import { Table, Tag, Button, Typography, Card, Modal, Descriptions, Switch } from 'antd';
 import { EyeOutlined } from '@ant-design/icons';
 import { orderService } from '@/services/order.service';
 
@@ -9,24 +9,30 @@ const { Title } = Typography;
 const OrderHistoryPage = () => {
     const [orders, setOrders] = useState([]);
     const [loading, setLoading] = useState(true);
+    const [nextCursor, setNextCursor] = useState(null);
     const [selectedOrder, setSelectedOrder] = useState(null);
     const [isModalOpen, setIsModalOpen] = useState(false);
+    const [includeArchived, setIncludeArchived] = useState(false);
 
-    useEffect(() => {
-        const fetchOrders = async () => {
-            try {
-                const data = await orderService.getMyOrders();
-                // Ensure data is an array
-                setOrders(Array.isArray(data) ? data : []);
-            } catch (error) {
-                console.error("Failed to fetch orders", error);
-            } finally {
-                setLoading(false);
-            }
-        };
+    const fetchOrders = async (cursor) => {
+        setLoading(true);
+        try {
+            const params = cursor ? { cursor } : {};
+            if (includeArchived) params.includeArchived = true;
+            const data = await orderService.getMyOrders(params);
+            const content = Array.isArray(data?.content) ? data.content : [];
+            setOrders(prev => (cursor ? [...prev, ...content] : content));
+            setNextCursor(data?.hasNext ? data.nextCursor : null);
+        } catch (error) {
+            console.error("Failed to fetch orders", error);
+        } finally {
+            setLoading(false);
+        }
+    };
 
+    useEffect(() => {
         fetchOrders();
-    }, []);
+    }, [includeArchived]);
 
     const handleViewOrder = (order) => {
         setSelectedOrder(order);
@@ -117,13 +123,24 @@ const OrderHistoryPage = () => {
         <div style={{ padding: '24px' }}>
             <Title level={2}>Order History</Title>
             <Card>
+                <div style={{ marginBottom: 16 }}>
+                    <Switch checked={includeArchived} onChange={setIncludeArchived} />
+                    <span style={{ marginLeft: 8 }}>Include older orders</span>
+                </div>
                 <Table
                     columns={columns}
                     dataSource={orders}
                     rowKey="id"
                     loading={loading}
-                    pagination={{ pageSize: 10 }}
+                    pagination={false}
                 />
+                {nextCursor && (
+                    <div style={{ textAlign: 'center', marginTop: 16 }}>
+                        <Button onClick={() => fetchOrders(nextCursor)} loading={loading}>
+                            Load more
+                        </Button>
+                    </div>
+                )}
             </Card>
 
             <Modal
@@ -24,9 +24,9 @@ const OrderPage = () => {
         if (!user) return;
         setLoading(true);
         try {
-            const resp = await api.get('/orders/my-orders');
+            const resp = await api.get('/orders/my-orders', { params: { size: 50 } });
             const data = resp.data.data || resp.data;
-            setOrders(Array.isArray(data) ? data : []);
+            setOrders(Array.isArray(data?.content) ? data.content : []);
         } catch (error) {
             console.error('Failed to load orders:', error);
             message.error('Unable to fetch orders. Showing local data.');
@@ -1,16 +1,19 @@
 import api from '@/config/api';
 
 export const orderService = {
-  getMyOrders: async () => {
-    const response = await api.get('/orders/my-orders');
+  // one page of order history: { content, nextCursor, hasNext }; pass nextCursor back to load more
+  getMyOrders: async (params = {}) => {
+    const response = await api.get('/orders/my-orders', { params });
     return response.data;
   },
   getOrderById: async (id) => {
     const response = await api.get(`/orders/${id}`);
     return response.data;
   },
-  createOrder: async (data) => {
-    const response = await api.post('/orders', data);
+  // reuse the same idempotencyKey when retrying a checkout so the order is only placed once
+  createOrder: async (data, idempotencyKey) => {
+    const config = idempotencyKey ? { headers: { 'Idempotency-Key': idempotencyKey } } : undefined;
+    const response = await api.post('/orders', data, config);
     return response.data;
   },
   getAll: async (params) => {
@@ -24,5 +27,10 @@ export const orderService = {
   updateStatus: async (id, status) => {
     const response = await api.put(`/orders/${id}/status`, null, { params: { status } });
     return response.data;
+  },
+  // { ids, status } or { filter: { status, orderedBefore }, status }; resolves to { applied, rejected, rejectedIds }
+  bulkUpdateStatus: async (request) => {
+    const response = await api.post('/orders/bulk/status', request);
+    return response.data;
   }
 };
@@ -131,6 +131,16 @@ export const productService = {
     }
   },
 
+  getImportJob: async (jobId) => {
+    try {
+      const response = await api.get(`/products/imports/${jobId}`);
+      return response.data;
+    } catch (error) {
+        console.error('API Error:', error);
+        throw error;
+    }
+  },
+
   bulkDelete: async (ids) => {
     try {
       const response = await api.delete('/products/bulk', { data: ids });